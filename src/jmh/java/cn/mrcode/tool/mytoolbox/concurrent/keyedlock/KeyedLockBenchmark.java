@@ -0,0 +1,84 @@
+package cn.mrcode.tool.mytoolbox.concurrent.keyedlock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * KeyedLock 加锁、释放锁的吞吐量
+ * <pre>
+ *  CONTENDED：所有线程竞争同一个 key
+ *  UNCONTENDED：每个线程使用自己的 key，只有 KeyedLock 内部的 map 是共享的
+ *  线程数通过不同的 benchmark 方法区分：threads1、threads4、threads16
+ *
+ *  gradle jmh -PjmhIncludes=KeyedLockBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyedLockBenchmark {
+    @Param({"CONTENDED", "UNCONTENDED"})
+    private String contention;
+
+    @Param({"false", "true"})
+    private boolean fair;
+
+    private KeyedLock<String> keyedLock;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        keyedLock = new KeyedLock<>(fair);
+        threadIndex.set(0);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        private String key;
+
+        @Setup
+        public void setup(KeyedLockBenchmark benchmark) {
+            key = "CONTENDED".equals(benchmark.contention) ? "key" : "key-" + benchmark.threadIndex.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads1(ThreadKey threadKey, Blackhole blackhole) {
+        acquireAndRelease(threadKey, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads4(ThreadKey threadKey, Blackhole blackhole) {
+        acquireAndRelease(threadKey, blackhole);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16(ThreadKey threadKey, Blackhole blackhole) {
+        acquireAndRelease(threadKey, blackhole);
+    }
+
+    private void acquireAndRelease(ThreadKey threadKey, Blackhole blackhole) {
+        Releasable lock = keyedLock.acquire(threadKey.key);
+        try {
+            // 模拟临界区中很少的工作
+            Blackhole.consumeCPU(16);
+            blackhole.consume(threadKey.key);
+        } finally {
+            lock.close();
+        }
+    }
+}
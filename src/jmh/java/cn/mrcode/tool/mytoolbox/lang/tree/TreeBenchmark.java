@@ -0,0 +1,103 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import lombok.Getter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 树的构建
+ * <pre>
+ *  数据为随机的树，10 个根节点，父节点随机，顺序打乱
+ *  buildTree、buildTreeParallel、buildTreeIterator：TreeUtil 构建节点对象
+ *  compactTree：CompactTree 只构建数组结构，不创建节点对象
+ *  compactTreeLong：CompactTree.buildLong，key 保存在 long[] 中，构建时不装箱、查找时不调用 equals
+ *
+ *  gradle jmh -PjmhIncludes=TreeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TreeBenchmark {
+    @Param({"1000", "100000", "2000000"})
+    private int nodes;
+
+    private List<Row> rows;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        rows = new ArrayList<>(nodes);
+        for (int id = 1; id <= nodes; id++) {
+            int pid = id <= 10 ? -1 : 1 + random.nextInt(id - 1);
+            rows.add(new Row(id, pid, "node-" + id));
+        }
+        Collections.shuffle(rows, random);
+    }
+
+    @Benchmark
+    public List<Node> buildTree() {
+        return TreeUtil.buildTree(rows, Node::new, Row::getId, Row::getPid, pid -> pid == -1, Node::childs);
+    }
+
+    @Benchmark
+    public List<Node> buildTreeParallel() {
+        return TreeUtil.buildTreeParallel(rows, Node::new, Row::getId, Row::getPid, pid -> pid == -1, Node::childs);
+    }
+
+    @Benchmark
+    public List<Node> buildTreeIterator() {
+        return TreeUtil.buildTree(rows.iterator(), Node::new, Row::getId, Row::getPid, pid -> pid == -1, Node::childs, null);
+    }
+
+    @Benchmark
+    public CompactTree<Integer> compactTree() {
+        return CompactTree.build(rows, Row::getId, Row::getPid, pid -> pid == -1);
+    }
+
+    @Benchmark
+    public CompactTree<Long> compactTreeLong() {
+        return CompactTree.buildLong(rows, Row::getId, Row::getPid, pid -> pid == -1);
+    }
+
+    @Getter
+    public static class Row {
+        private final Integer id;
+        private final Integer pid;
+        private final String name;
+
+        public Row(Integer id, Integer pid, String name) {
+            this.id = id;
+            this.pid = pid;
+            this.name = name;
+        }
+    }
+
+    public static class Node {
+        private final Row row;
+        private List<Node> childs;
+
+        public Node(Row row) {
+            this.row = row;
+        }
+
+        public List<Node> childs() {
+            if (childs == null) {
+                childs = new ArrayList<>();
+            }
+            return childs;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间序列填充和重采样
+ * <pre>
+ *  数据为每秒一个点，随机缺失 10% 的点
+ *  fill*：填充缺失的时间点，分别测试 Map 方式、有序归并方式和毫秒时间戳槽位方式
+ *  resample*：按 1 分钟重采样求平均值，分别测试对象列表和基本类型数组
+ *
+ *  gradle jmh -PjmhIncludes=TimeSeriesBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeSeriesBenchmark {
+    private static final long START = 1_700_000_000_000L;
+    private static final long STEP = 1000;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int points;
+
+    private long end;
+    private List<Point> rawData;
+    private List<Long> timeline;
+    private long[] timestamps;
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        end = START + (points - 1) * STEP;
+        Random random = new Random(1);
+        rawData = new ArrayList<>(points);
+        timeline = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            long time = START + i * STEP;
+            timeline.add(time);
+            if (random.nextInt(10) != 0) {
+                rawData.add(new Point(time, random.nextDouble()));
+            }
+        }
+        timestamps = new long[rawData.size()];
+        values = new double[rawData.size()];
+        for (int i = 0; i < rawData.size(); i++) {
+            timestamps[i] = rawData.get(i).time;
+            values[i] = rawData.get(i).value;
+        }
+    }
+
+    @Benchmark
+    public List<Point> fillByTimeline() {
+        return TimeSeriesUtils.fillMissingTimePoints(rawData, timeline, Point::getTime, time -> new Point(time, 0));
+    }
+
+    @Benchmark
+    public List<Point> fillSorted() {
+        return TimeSeriesUtils.fillMissingTimePointsSorted(rawData, timeline, Point::getTime, time -> new Point(time, 0), null);
+    }
+
+    @Benchmark
+    public List<Point> fillByMillis() {
+        return TimeSeriesUtils.fillMissingTimePoints(rawData, START, end, STEP, Point::getTime, time -> new Point(time, 0), null);
+    }
+
+    @Benchmark
+    public double[] resampleObjects() {
+        return TimeSeriesResampler.resample(rawData, START, end, 60 * STEP, Point::getTime, Point::getValue,
+                TimeSeriesResampler.Aggregation.AVG, Double.NaN);
+    }
+
+    @Benchmark
+    public double[] resampleArrays() {
+        return TimeSeriesResampler.resample(timestamps, values, START, end, 60 * STEP,
+                TimeSeriesResampler.Aggregation.AVG, Double.NaN);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Point {
+        private final long time;
+        private final double value;
+    }
+}
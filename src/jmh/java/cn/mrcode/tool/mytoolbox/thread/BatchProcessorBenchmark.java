@@ -0,0 +1,69 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchProcessor 处理吞吐量
+ * <pre>
+ *  处理器在整个测试期间一直运行，每次操作 put 一条数据，队列满时 put 会阻塞，
+ *  所以稳定后 put 的速度就是消费的速度
+ *  消费方模拟批量写库：每批固定开销 batchCost + 每条数据的开销 itemCost（Blackhole.consumeCPU 的 token 数）
+ *  batchSize = 0 表示每次消费 1 条数据
+ *
+ *  gradle jmh -PjmhIncludes=BatchProcessorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchProcessorBenchmark {
+    @Param({"0", "10", "100", "1000"})
+    private int batchSize;
+
+    @Param({"1", "4"})
+    private int workers;
+
+    @Param({"2000"})
+    private int batchCost;
+
+    @Param({"20"})
+    private int itemCost;
+
+    private BatchProcessor<Long> processor;
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        processor = new BatchProcessor<>(10_000);
+        processor.setThreadNamePrefix("BatchProcessorBenchmark-");
+        processor.start(this::consume, workers, batchSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.stopQuietly();
+        processor.await();
+    }
+
+    private void consume(Long entity, List<Long> entitys) {
+        int count = entitys == null ? 1 : entitys.size();
+        Blackhole.consumeCPU(batchCost + (long) itemCost * count);
+    }
+
+    @Benchmark
+    public void put() {
+        processor.put(sequence++);
+    }
+}
@@ -0,0 +1,113 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SimpleTaskDispatcher 任务添加（准入）速度
+ * <pre>
+ *  tryAddUnique：每次添加新的 ID，队列满时按 REJECT 策略直接拒绝，测量不阻塞时的添加速度
+ *    添加的速度远大于处理的速度，队列很快就满了，之后主要是 REJECTED 的快速路径，主分数是两者混合的结果；
+ *    所以通过 AddCounters 分别输出 queued（进入队列）和 rejected（被拒绝）单位时间内的次数，
+ *    rejected 是拒绝路径的开销；queued 受限于 worker 取出任务的速度（即使 handleCost=0 也只有总次数的一成左右），
+ *    只能看出准入是否拖慢了处理，不能代表进入队列路径本身的开销
+ *  tryAddDuplicate：在 64 个 ID 中循环添加，大部分是 ALREADY_PRESENT、RERUN_SCHEDULED，测量去重路径的开销
+ *  addTask：队列满时阻塞，稳定后就是处理的速度
+ *  handler 使用 Blackhole.consumeCPU(handleCost) 模拟处理耗时
+ *
+ *  gradle jmh -PjmhIncludes=SimpleTaskDispatcherBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SimpleTaskDispatcherBenchmark {
+    private static final int DUPLICATE_ID_COUNT = 64;
+
+    @Param({"1", "4"})
+    private int workThreadNum;
+
+    @Param({"false", "true"})
+    private boolean virtualThread;
+
+    @Param({"1000"})
+    private int maxQueueCnt;
+
+    @Param({"200"})
+    private int handleCost;
+
+    private SimpleTaskDispatcher<Long> dispatcher;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        dispatcher = new SimpleTaskDispatcher<>(workThreadNum, maxQueueCnt, "DispatcherBenchmark-", virtualThread,
+                id -> Blackhole.consumeCPU(handleCost), null);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdownNow();
+        dispatcher.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public SimpleTaskDispatcher.AddResult tryAddUnique(AddCounters counters) {
+        return counters.count(dispatcher.tryAddTask(sequence.getAndIncrement()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SimpleTaskDispatcher.AddResult tryAddUniqueThreads4(AddCounters counters) {
+        return counters.count(dispatcher.tryAddTask(sequence.getAndIncrement()));
+    }
+
+    @Benchmark
+    public SimpleTaskDispatcher.AddResult tryAddDuplicate() {
+        return dispatcher.tryAddTask(sequence.getAndIncrement() % DUPLICATE_ID_COUNT);
+    }
+
+    @Benchmark
+    public void addTask() {
+        dispatcher.addTask(sequence.getAndIncrement());
+    }
+
+    /**
+     * 按添加结果分别计数，JMH 会把每个字段作为单独的指标输出（次数 / 时间）
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class AddCounters {
+        public long queued;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queued = 0;
+            rejected = 0;
+        }
+
+        private SimpleTaskDispatcher.AddResult count(SimpleTaskDispatcher.AddResult result) {
+            if (result == SimpleTaskDispatcher.AddResult.QUEUED) {
+                queued++;
+            } else if (result == SimpleTaskDispatcher.AddResult.REJECTED) {
+                rejected++;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 紧凑的树结构，用基本类型数组代替节点对象
+ * <pre>
+ *  解决的问题：TreeUtil 构建的树每个节点都是一个对象，再加上一个子节点 ArrayList，
+ *  200 万节点的分类树光是 ArrayList 对象头和 HashMap 的 Entry、装箱的下标就要几百 MB
+ *
+ *  实现方式：节点用下标表示（按输入中第一次出现的顺序编号），结构保存在 3 个 int 数组中：
+ *    parent[i]：父节点下标，根节点和父节点不存在的节点为 -1
+ *    firstChild[i]：第一个子节点下标，没有时为 -1
+ *    nextSibling[i]：下一个兄弟节点下标，没有时为 -1（根节点之间也通过 nextSibling 串起来）
+ *  key 到下标的索引使用开放寻址的 int 数组，不需要 Entry 对象，也不需要装箱下标
+ *  每个节点固定占用约 3 * 4 + 2 * 4 字节，外加 key 本身
+ *  id 是 long 时使用 buildLong，key 保存在 long[] 中，构建和查找都不装箱，每个节点再多 8 字节；
+ *  build 构建时 key 是对象数组中的引用，外加每个装箱对象本身（Long 约 16 字节）
+ *
+ *  遍历使用 Cursor 游标，只有在确实需要节点对象时才调用 toNodes 转换为 TreeUtil 一样的节点结构
+ *  构建之后不可修改，可以被多个线程同时读取（每个线程使用自己的 Cursor）
+ *
+ *  使用示例：
+ *     CompactTree<Long> tree = CompactTree.buildLong(list, Category::getId, Category::getParentId, pid -> pid == -1);
+ *     CompactTree<Long>.Cursor cursor = tree.cursorOfLong(categoryId);
+ *     if (cursor.toFirstChild()) {
+ *         do {
+ *             long childId = cursor.longKey();
+ *         } while (cursor.toNextSibling());
+ *     }
+ * </pre>
+ *
+ * @param <K> id 的类型
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class CompactTree<K> {
+    private static final int NONE = -1;
+
+    /**
+     * build 构建时的 key，buildLong 构建时为 null
+     */
+    private final Object[] keys;
+    /**
+     * buildLong 构建时的 key，build 构建时为 null
+     */
+    private final long[] longKeys;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int firstRoot;
+    /**
+     * 开放寻址的 key 索引，值为 下标 + 1，0 表示空槽位
+     */
+    private final int[] table;
+    private final int mask;
+
+    private CompactTree(Object[] keys, long[] longKeys, int[] parent, int[] firstChild, int[] nextSibling, int firstRoot, int[] table) {
+        this.keys = keys;
+        this.longKeys = longKeys;
+        this.parent = parent;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.firstRoot = firstRoot;
+        this.table = table;
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * 构建紧凑树，参数含义和 TreeUtil.buildTree 一致，兄弟节点的顺序和 list 中的顺序一致
+     *
+     * @param list       原始列表，id 重复时以第一个出现的为准
+     * @param idExtr     从元素中提取 id，不能为 null
+     * @param pidExtr    从元素中提取 pid
+     * @param pidIsEmpty 判定 pid 是否为空
+     * @param <T>        原始列表元素
+     * @param <K>        id 和 父 id 的类型
+     * @return
+     */
+    public static <T, K> CompactTree<K> build(Collection<T> list,
+                                              Function<T, K> idExtr,
+                                              Function<T, K> pidExtr,
+                                              Function<K, Boolean> pidIsEmpty) {
+        int capacity = list == null ? 0 : list.size();
+        Object[] keys = new Object[capacity];
+        Object[] pids = new Object[capacity];
+        int[] table = new int[tableSize(capacity)];
+        int size = 0;
+        if (list != null) {
+            for (T item : list) {
+                K id = Objects.requireNonNull(idExtr.apply(item), "id 不能为 null");
+                if (insert(table, keys, id, size)) {
+                    keys[size] = id;
+                    pids[size] = pidExtr.apply(item);
+                    size++;
+                }
+            }
+        }
+        keys = Arrays.copyOf(keys, size);
+
+        int[] parent = new int[size];
+        boolean[] isRoot = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            @SuppressWarnings("unchecked")
+            K pid = (K) pids[i];
+            isRoot[i] = pidIsEmpty.apply(pid);
+            parent[i] = isRoot[i] || pid == null ? NONE : find(table, keys, pid);
+        }
+        return link(keys, null, parent, isRoot, table);
+    }
+
+    /**
+     * 构建 id 是 long 的紧凑树，和 build 的区别是 key 保存在 long[] 中，构建和查找都不装箱
+     *
+     * @param list       原始列表，id 重复时以第一个出现的为准
+     * @param idExtr     从元素中提取 id
+     * @param pidExtr    从元素中提取 pid
+     * @param pidIsEmpty 判定 pid 是否为空
+     * @param <T>        原始列表元素
+     * @return getKey、Cursor.key 会装箱，遍历时使用 getLongKey、Cursor.longKey
+     * @see #build(Collection, Function, Function, Function)
+     */
+    public static <T> CompactTree<Long> buildLong(Collection<T> list,
+                                                  ToLongFunction<T> idExtr,
+                                                  ToLongFunction<T> pidExtr,
+                                                  LongPredicate pidIsEmpty) {
+        int capacity = list == null ? 0 : list.size();
+        long[] keys = new long[capacity];
+        long[] pids = new long[capacity];
+        int[] table = new int[tableSize(capacity)];
+        int size = 0;
+        if (list != null) {
+            for (T item : list) {
+                long id = idExtr.applyAsLong(item);
+                if (insert(table, keys, id, size)) {
+                    keys[size] = id;
+                    pids[size] = pidExtr.applyAsLong(item);
+                    size++;
+                }
+            }
+        }
+        keys = Arrays.copyOf(keys, size);
+
+        int[] parent = new int[size];
+        boolean[] isRoot = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            isRoot[i] = pidIsEmpty.test(pids[i]);
+            parent[i] = isRoot[i] ? NONE : find(table, keys, pids[i]);
+        }
+        return link(null, keys, parent, isRoot, table);
+    }
+
+    /**
+     * 根据每个节点的父节点下标，串起 firstChild、nextSibling
+     */
+    private static <K> CompactTree<K> link(Object[] keys, long[] longKeys, int[] parent, boolean[] isRoot, int[] table) {
+        int size = parent.length;
+        int[] firstChild = new int[size];
+        int[] nextSibling = new int[size];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+        // 倒序头插，兄弟节点之间保持原来的顺序
+        int firstRoot = NONE;
+        for (int i = size - 1; i >= 0; i--) {
+            if (isRoot[i]) {
+                nextSibling[i] = firstRoot;
+                firstRoot = i;
+            } else if (parent[i] != NONE) {
+                nextSibling[i] = firstChild[parent[i]];
+                firstChild[parent[i]] = i;
+            }
+        }
+        return new CompactTree<>(keys, longKeys, parent, firstChild, nextSibling, firstRoot, table);
+    }
+
+    /**
+     * 节点数量，包括父节点不存在的节点
+     *
+     * @return
+     */
+    public int size() {
+        return parent.length;
+    }
+
+    /**
+     * @param key
+     * @return 不存在时返回 -1
+     */
+    public int indexOf(K key) {
+        if (key == null) {
+            return NONE;
+        }
+        return longKeys != null ? find(table, longKeys, (Long) key) : find(table, keys, key);
+    }
+
+    /**
+     * 不装箱的查找；不和 indexOf 重载，否则 CompactTree&lt;Integer&gt; 的 indexOf(1) 会匹配到这个方法
+     *
+     * @param key
+     * @return 不存在时返回 -1
+     * @throws IllegalStateException 不是 buildLong 构建的树
+     */
+    public int indexOfLong(long key) {
+        return find(table, requireLongKeys(), key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public K getKey(int index) {
+        return longKeys != null ? (K) Long.valueOf(longKeys[index]) : (K) keys[index];
+    }
+
+    /**
+     * 不装箱获取 key
+     *
+     * @throws IllegalStateException 不是 buildLong 构建的树
+     */
+    public long getLongKey(int index) {
+        return requireLongKeys()[index];
+    }
+
+    private long[] requireLongKeys() {
+        if (longKeys == null) {
+            throw new IllegalStateException("只有 buildLong 构建的树才能使用 long 类型的 key");
+        }
+        return longKeys;
+    }
+
+    /**
+     * @return 第一个根节点的下标，没有时返回 -1
+     */
+    public int getFirstRoot() {
+        return firstRoot;
+    }
+
+    /**
+     * @return 父节点下标，没有时返回 -1
+     */
+    public int getParent(int index) {
+        return parent[index];
+    }
+
+    /**
+     * @return 第一个子节点下标，没有时返回 -1
+     */
+    public int getFirstChild(int index) {
+        return firstChild[index];
+    }
+
+    /**
+     * @return 下一个兄弟节点下标，没有时返回 -1
+     */
+    public int getNextSibling(int index) {
+        return nextSibling[index];
+    }
+
+    /**
+     * 从第一个根节点开始的游标
+     *
+     * @return 没有根节点时游标无效（isValid 为 false）
+     */
+    public Cursor cursor() {
+        return new Cursor(firstRoot);
+    }
+
+    /**
+     * 从指定节点开始的游标
+     *
+     * @param key
+     * @return 节点不存在时游标无效（isValid 为 false）
+     */
+    public Cursor cursor(K key) {
+        return new Cursor(indexOf(key));
+    }
+
+    /**
+     * 从指定节点开始的游标，不装箱
+     *
+     * @param key
+     * @return 节点不存在时游标无效（isValid 为 false）
+     * @throws IllegalStateException 不是 buildLong 构建的树
+     */
+    public Cursor cursorOfLong(long key) {
+        return new Cursor(indexOfLong(key));
+    }
+
+    /**
+     * 转换为节点对象结构，结果和 TreeUtil.buildTree 一致
+     *
+     * @param nodeFactory 按节点下标创建节点对象，可以通过 getKey 获取节点的 id
+     * @param childExtr   子节点获取，如果子节点为空，需要自行初始化一个空的 list 并 set 到 treeNode 的子节点上
+     * @param <N>         节点类型
+     * @return 根节点列表
+     */
+    public <N> List<N> toNodes(IntFunction<N> nodeFactory, Function<N, List<N>> childExtr) {
+        Objects.requireNonNull(nodeFactory);
+        Objects.requireNonNull(childExtr);
+        int size = parent.length;
+        Object[] nodes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = nodeFactory.apply(i);
+        }
+        List<N> roots = new ArrayList<>();
+        for (int i = firstRoot; i != NONE; i = nextSibling[i]) {
+            roots.add(node(nodes, i));
+        }
+        for (int i = 0; i < size; i++) {
+            if (firstChild[i] == NONE) {
+                continue;
+            }
+            List<N> childs = childExtr.apply(node(nodes, i));
+            for (int c = firstChild[i]; c != NONE; c = nextSibling[c]) {
+                childs.add(node(nodes, c));
+            }
+        }
+        return roots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <N> N node(Object[] nodes, int index) {
+        return (N) nodes[index];
+    }
+
+    private static int tableSize(int capacity) {
+        // 负载因子不超过 0.5，线性探测的查找长度比较短
+        int size = 2;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(long key) {
+        int h = Long.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 插入 key，已经存在时返回 false
+     */
+    private static boolean insert(int[] table, Object[] keys, Object key, int index) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int value = table[slot];
+            if (value == 0) {
+                table[slot] = index + 1;
+                return true;
+            }
+            if (keys[value - 1].equals(key)) {
+                return false;
+            }
+        }
+    }
+
+    private static int find(int[] table, Object[] keys, Object key) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int value = table[slot];
+            if (value == 0) {
+                return NONE;
+            }
+            if (keys[value - 1].equals(key)) {
+                return value - 1;
+            }
+        }
+    }
+
+    /**
+     * 插入 long 类型的 key，已经存在时返回 false
+     */
+    private static boolean insert(int[] table, long[] keys, long key, int index) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int value = table[slot];
+            if (value == 0) {
+                table[slot] = index + 1;
+                return true;
+            }
+            if (keys[value - 1] == key) {
+                return false;
+            }
+        }
+    }
+
+    private static int find(int[] table, long[] keys, long key) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int value = table[slot];
+            if (value == 0) {
+                return NONE;
+            }
+            if (keys[value - 1] == key) {
+                return value - 1;
+            }
+        }
+    }
+
+    /**
+     * 树的游标，在节点之间移动，不创建节点对象；移动失败时停留在原来的位置
+     */
+    public class Cursor {
+        private int index;
+
+        private Cursor(int index) {
+            this.index = index;
+        }
+
+        /**
+         * 当前位置是否是一个节点
+         *
+         * @return
+         */
+        public boolean isValid() {
+            return index != NONE;
+        }
+
+        /**
+         * 当前节点的下标
+         *
+         * @return
+         */
+        public int index() {
+            return index;
+        }
+
+        public K key() {
+            return getKey(index);
+        }
+
+        /**
+         * @see #getLongKey(int)
+         */
+        public long longKey() {
+            return getLongKey(index);
+        }
+
+        public boolean toParent() {
+            return moveTo(parent[index]);
+        }
+
+        public boolean toFirstChild() {
+            return moveTo(firstChild[index]);
+        }
+
+        public boolean toNextSibling() {
+            return moveTo(nextSibling[index]);
+        }
+
+        /**
+         * 按先序遍历移动到下一个节点：先子节点，再兄弟节点，再祖先节点的兄弟节点
+         *
+         * @return 已经是最后一个节点时返回 false
+         */
+        public boolean toNextPreOrder() {
+            if (toFirstChild() || toNextSibling()) {
+                return true;
+            }
+            for (int i = parent[index]; i != NONE; i = parent[i]) {
+                if (nextSibling[i] != NONE) {
+                    index = nextSibling[i];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean moveTo(int target) {
+            if (target == NONE) {
+                return false;
+            }
+            index = target;
+            return true;
+        }
+    }
+}
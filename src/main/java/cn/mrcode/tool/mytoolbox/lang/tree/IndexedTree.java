@@ -0,0 +1,311 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 带索引的树（只读视图），用于频繁的祖先、子孙关系查询
+ * <pre>
+ *  解决的问题：权限校验时需要反复判断 "资源 X 是否在 Y 下面"、"根到 X 的路径"、"Y 的所有子孙"，
+ *  每次都递归遍历子节点列表，一次权限校验要做几千次
+ *
+ *  实现方式：构建时做一次先序遍历（欧拉序），给每个节点分配：
+ *    1. tin：先序编号，子树中的节点编号是连续的 [tin, tout)，所以
+ *       判断子孙只需要比较编号 O(1)，子树就是先序数组中的一段 O(1)
+ *    2. depth：深度，根节点为 0
+ *    3. parent：父节点编号，祖先和最近公共祖先使用倍增表查询 O(log 深度)，倍增表在第一次使用时才构建
+ *
+ *  构建之后不可修改，可以被多个线程同时读取；树变化后需要重新构建（可以配合 TreeIndex 使用）
+ *  使用示例：
+ *     List<TreeNodeRes> roots = TreeUtil.buildTree(...);
+ *     IndexedTree<TreeNodeRes, Long> tree = new IndexedTree<>(roots, TreeNodeRes::getId, TreeNodeRes::getChilds);
+ *     tree.isDescendant(resourceId, menuId);
+ *     tree.getDescendants(menuId);
+ * </pre>
+ *
+ * @param <N> 树节点类型
+ * @param <K> id 的类型
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class IndexedTree<N, K> {
+    /**
+     * 先序遍历的节点，下标就是 tin
+     */
+    private final List<N> order;
+    private final Map<K, Integer> index;
+    /**
+     * 子树结束编号（不包含）
+     */
+    private final int[] tout;
+    private final int[] depth;
+    private final int[] parent;
+    private final int maxDepth;
+    /**
+     * 倍增表：up[k][i] 为 i 向上 2^k 层的祖先编号，没有时为 -1；第一次查询祖先时构建
+     */
+    private volatile int[][] up;
+
+    /**
+     * @param roots       根节点列表，比如 TreeUtil.buildTree 的结果
+     * @param idExtr      从节点中提取 id，id 不能重复
+     * @param childGetter 获取子节点列表，可以返回 null
+     */
+    public IndexedTree(List<N> roots, Function<N, K> idExtr, Function<N, List<N>> childGetter) {
+        Objects.requireNonNull(idExtr);
+        Objects.requireNonNull(childGetter);
+        List<N> nodes = new ArrayList<>();
+        Map<K, Integer> map = new HashMap<>();
+        int[] parents = new int[16];
+        int[] depths = new int[16];
+        int deepest = 0;
+
+        // 先序遍历，不使用递归，避免很深的树栈溢出；栈中保存 节点 和 父节点编号
+        List<N> stackNodes = new ArrayList<>();
+        int[] stackParents = new int[16];
+        if (roots != null) {
+            for (int i = roots.size() - 1; i >= 0; i--) {
+                stackParents = push(stackNodes, stackParents, roots.get(i), -1);
+            }
+        }
+        while (!stackNodes.isEmpty()) {
+            int top = stackNodes.size() - 1;
+            N node = stackNodes.remove(top);
+            int parentTin = stackParents[top];
+            int tin = nodes.size();
+            if (map.putIfAbsent(idExtr.apply(node), tin) != null) {
+                throw new IllegalArgumentException("节点 id 重复：" + idExtr.apply(node));
+            }
+            nodes.add(node);
+            if (tin == parents.length) {
+                parents = Arrays.copyOf(parents, tin << 1);
+                depths = Arrays.copyOf(depths, tin << 1);
+            }
+            parents[tin] = parentTin;
+            depths[tin] = parentTin < 0 ? 0 : depths[parentTin] + 1;
+            deepest = Math.max(deepest, depths[tin]);
+            List<N> children = childGetter.apply(node);
+            if (children != null) {
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stackParents = push(stackNodes, stackParents, children.get(i), tin);
+                }
+            }
+        }
+
+        int size = nodes.size();
+        this.order = Collections.unmodifiableList(nodes);
+        this.index = map;
+        this.parent = Arrays.copyOf(parents, size);
+        this.depth = Arrays.copyOf(depths, size);
+        this.maxDepth = deepest;
+        // 先序编号中，子节点的编号总是大于父节点，倒序累加子树大小
+        this.tout = new int[size];
+        int[] subtreeSize = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            subtreeSize[i]++;
+            if (parent[i] >= 0) {
+                subtreeSize[parent[i]] += subtreeSize[i];
+            }
+            tout[i] = i + subtreeSize[i];
+        }
+    }
+
+    public int size() {
+        return order.size();
+    }
+
+    public boolean contains(K id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * @param id
+     * @return 不存在时返回 null
+     */
+    public N getNode(K id) {
+        Integer tin = index.get(id);
+        return tin == null ? null : order.get(tin);
+    }
+
+    /**
+     * 节点的深度，根节点为 0
+     *
+     * @param id
+     * @return 不存在时返回 -1
+     */
+    public int getDepth(K id) {
+        Integer tin = index.get(id);
+        return tin == null ? -1 : depth[tin];
+    }
+
+    /**
+     * @param id
+     * @return 根节点或者不存在时返回 null
+     */
+    public N getParent(K id) {
+        Integer tin = index.get(id);
+        return tin == null || parent[tin] < 0 ? null : order.get(parent[tin]);
+    }
+
+    /**
+     * 判断 descendantId 是否是 ancestorId 的子孙节点（不包含自己），O(1)
+     *
+     * @param descendantId
+     * @param ancestorId
+     * @return 任意一个不存在时返回 false
+     */
+    public boolean isDescendant(K descendantId, K ancestorId) {
+        Integer d = index.get(descendantId);
+        Integer a = index.get(ancestorId);
+        return d != null && a != null && a < d && d < tout[a];
+    }
+
+    /**
+     * 子树中的所有节点（包含自己），按先序排列，返回的是先序数组的一段视图，O(1)
+     *
+     * @param id
+     * @return 不存在时返回空列表
+     */
+    public List<N> getSubtree(K id) {
+        Integer tin = index.get(id);
+        return tin == null ? Collections.emptyList() : order.subList(tin, tout[tin]);
+    }
+
+    /**
+     * 所有子孙节点（不包含自己），按先序排列，O(1)
+     *
+     * @param id
+     * @return 不存在时返回空列表
+     */
+    public List<N> getDescendants(K id) {
+        Integer tin = index.get(id);
+        return tin == null ? Collections.emptyList() : order.subList(tin + 1, tout[tin]);
+    }
+
+    /**
+     * 从根节点到此节点的路径（包含根节点和自己），O(深度)
+     *
+     * @param id
+     * @return 不存在时返回空列表
+     */
+    public List<N> getPath(K id) {
+        Integer tin = index.get(id);
+        if (tin == null) {
+            return Collections.emptyList();
+        }
+        N[] path = newArray(depth[tin] + 1);
+        for (int i = tin, d = depth[tin]; i >= 0; i = parent[i], d--) {
+            path[d] = order.get(i);
+        }
+        return Arrays.asList(path);
+    }
+
+    /**
+     * 向上第 levels 层的祖先，O(log 深度)
+     *
+     * @param id
+     * @param levels 0 表示自己，1 表示父节点
+     * @return 不存在或者超过了根节点时返回 null
+     */
+    public N getAncestor(K id, int levels) {
+        Integer tin = index.get(id);
+        if (tin == null || levels < 0 || levels > depth[tin]) {
+            return null;
+        }
+        return order.get(lift(tin, levels));
+    }
+
+    /**
+     * 最近公共祖先，其中一个是另一个的祖先时返回这个祖先，O(log 深度)
+     *
+     * @param id1
+     * @param id2
+     * @return 不存在，或者不在同一棵树中时返回 null
+     */
+    public N getLowestCommonAncestor(K id1, K id2) {
+        Integer a = index.get(id1);
+        Integer b = index.get(id2);
+        if (a == null || b == null) {
+            return null;
+        }
+        int x = a;
+        int y = b;
+        // 其中一个是另一个的祖先（包括相同）
+        if (x <= y && y < tout[x]) {
+            return order.get(x);
+        }
+        if (y <= x && x < tout[y]) {
+            return order.get(y);
+        }
+        // 从 x 往上跳，跳到不是 y 的祖先的最高节点，它的父节点就是最近公共祖先
+        int[][] table = liftingTable();
+        for (int k = table.length - 1; k >= 0; k--) {
+            int next = table[k][x];
+            if (next >= 0 && !(next <= y && y < tout[next])) {
+                x = next;
+            }
+        }
+        int lca = parent[x];
+        return lca < 0 ? null : order.get(lca);
+    }
+
+    private int lift(int tin, int levels) {
+        int[][] table = liftingTable();
+        int current = tin;
+        for (int k = 0; levels > 0; k++, levels >>= 1) {
+            if ((levels & 1) != 0) {
+                current = table[k][current];
+            }
+        }
+        return current;
+    }
+
+    private int[][] liftingTable() {
+        int[][] table = up;
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            if (up != null) {
+                return up;
+            }
+            int size = order.size();
+            // 只需要覆盖最大深度
+            int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDepth));
+            table = new int[levels][];
+            table[0] = parent;
+            for (int k = 1; k < levels; k++) {
+                int[] prev = table[k - 1];
+                int[] current = new int[size];
+                for (int i = 0; i < size; i++) {
+                    current[i] = prev[i] < 0 ? -1 : prev[prev[i]];
+                }
+                table[k] = current;
+            }
+            up = table;
+            return table;
+        }
+    }
+
+    private static <N> int[] push(List<N> stackNodes, int[] stackParents, N node, int parentTin) {
+        int top = stackNodes.size();
+        if (top == stackParents.length) {
+            stackParents = Arrays.copyOf(stackParents, top << 1);
+        }
+        stackNodes.add(node);
+        stackParents[top] = parentTin;
+        return stackParents;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <N> N[] newArray(int size) {
+        return (N[]) new Object[size];
+    }
+}
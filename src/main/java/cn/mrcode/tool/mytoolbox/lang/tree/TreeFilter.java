@@ -0,0 +1,266 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 树的搜索过滤：保留匹配的节点和它们的祖先节点，结构不变
+ * <pre>
+ *  解决的问题：树形搜索框每输入一个字都要过滤一次树，之前的做法是先递归复制整棵树再删除不匹配的节点
+ *  本工具自底向上遍历一次：子树中有匹配的节点时才保留当前节点，并且只复制保留下来的节点，丢弃的节点不会被复制
+ *  原来的树不会被修改，可以继续缓存使用（比如 TreeIndex.getRoots() 的结果）
+ *
+ *  使用示例：
+ *     List<TreeNodeRes> result = TreeFilter.filterParallel(roots,
+ *                 TreeNodeRes::getChilds,
+ *                 node -> node.getName().contains(keyword),
+ *                 TreeNodeRes::copyWithoutChilds,
+ *                 TreeNodeRes::childs);
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class TreeFilter {
+    /**
+     * 并行过滤时，只在前几层拆分任务，再往下的子树在一个线程中过滤
+     */
+    private static final int PARALLEL_DEPTH = 3;
+
+    /**
+     * @see #filter(List, Function, Predicate, Function, Function, boolean)
+     */
+    public static <N> List<N> filter(List<N> roots,
+                                     Function<N, List<N>> childGetter,
+                                     Predicate<? super N> predicate,
+                                     Function<N, N> copier,
+                                     Function<N, List<N>> childExtr) {
+        return filter(roots, childGetter, predicate, copier, childExtr, false);
+    }
+
+    /**
+     * 过滤树
+     *
+     * @param roots              根节点列表，不会被修改
+     * @param childGetter        获取原来的节点的子节点列表，可以返回 null
+     * @param predicate          匹配条件
+     * @param copier             复制节点，不需要复制子节点
+     * @param childExtr          获取复制出来的节点的子节点列表，如果子节点为空，需要自行初始化一个空的 list 并 set 到 treeNode 的子节点上
+     * @param keepMatchedSubtree 匹配的节点是否保留它的所有子孙节点，为 false 时只保留匹配的节点和它们的祖先节点
+     * @param <N>                树节点类型
+     * @return 过滤后的根节点列表，都是新的节点实例
+     */
+    public static <N> List<N> filter(List<N> roots,
+                                     Function<N, List<N>> childGetter,
+                                     Predicate<? super N> predicate,
+                                     Function<N, N> copier,
+                                     Function<N, List<N>> childExtr,
+                                     boolean keepMatchedSubtree) {
+        Filter<N> filter = new Filter<>(childGetter, predicate, copier, childExtr, keepMatchedSubtree);
+        List<N> result = new ArrayList<>();
+        if (roots != null) {
+            for (N root : roots) {
+                N kept = filter.filterSubtree(root, false);
+                if (kept != null) {
+                    result.add(kept);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see #filterParallel(List, Function, Predicate, Function, Function, boolean)
+     */
+    public static <N> List<N> filterParallel(List<N> roots,
+                                             Function<N, List<N>> childGetter,
+                                             Predicate<? super N> predicate,
+                                             Function<N, N> copier,
+                                             Function<N, List<N>> childExtr) {
+        return filterParallel(roots, childGetter, predicate, copier, childExtr, false);
+    }
+
+    /**
+     * 并行过滤树，结果和 filter 完全一致
+     * <pre>
+     *     前 3 层的每个子树作为一个 ForkJoin 任务，在 ForkJoinPool.commonPool() 中并行过滤，
+     *     父节点等待所有子任务完成后，按原来的顺序组装保留下来的子节点
+     *     predicate、copier、childExtr 会被多个线程同时调用，不能有共享的可变状态
+     * </pre>
+     *
+     * @see #filter(List, Function, Predicate, Function, Function, boolean)
+     */
+    public static <N> List<N> filterParallel(List<N> roots,
+                                             Function<N, List<N>> childGetter,
+                                             Predicate<? super N> predicate,
+                                             Function<N, N> copier,
+                                             Function<N, List<N>> childExtr,
+                                             boolean keepMatchedSubtree) {
+        Filter<N> filter = new Filter<>(childGetter, predicate, copier, childExtr, keepMatchedSubtree);
+        if (roots == null || roots.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ForkJoinPool.commonPool().invoke(new RootsTask<>(filter, roots));
+    }
+
+    private static class Filter<N> {
+        private final Function<N, List<N>> childGetter;
+        private final Predicate<? super N> predicate;
+        private final Function<N, N> copier;
+        private final Function<N, List<N>> childExtr;
+        private final boolean keepMatchedSubtree;
+
+        private Filter(Function<N, List<N>> childGetter, Predicate<? super N> predicate, Function<N, N> copier,
+                       Function<N, List<N>> childExtr, boolean keepMatchedSubtree) {
+            this.childGetter = Objects.requireNonNull(childGetter);
+            this.predicate = Objects.requireNonNull(predicate);
+            this.copier = Objects.requireNonNull(copier);
+            this.childExtr = Objects.requireNonNull(childExtr);
+            this.keepMatchedSubtree = keepMatchedSubtree;
+        }
+
+        /**
+         * 当前节点是否需要保留子孙节点，force 表示祖先节点已经匹配并且需要保留整个子树
+         */
+        private boolean forceChildren(boolean force, boolean matched) {
+            return force || (keepMatchedSubtree && matched);
+        }
+
+        /**
+         * 根据过滤结果创建节点，不需要保留时返回 null
+         */
+        private N keep(N node, boolean force, boolean matched, List<N> keptChildren) {
+            boolean hasChildren = keptChildren != null && !keptChildren.isEmpty();
+            if (!force && !matched && !hasChildren) {
+                return null;
+            }
+            N copy = copier.apply(node);
+            if (hasChildren) {
+                childExtr.apply(copy).addAll(keptChildren);
+            }
+            return copy;
+        }
+
+        /**
+         * 在当前线程中过滤一个子树，后序遍历，不使用递归，避免很深的树栈溢出
+         */
+        private N filterSubtree(N root, boolean force) {
+            Deque<Frame<N>> stack = new ArrayDeque<>();
+            stack.push(new Frame<>(root, force, predicate.test(root), childGetter.apply(root)));
+            N result = null;
+            while (!stack.isEmpty()) {
+                Frame<N> frame = stack.peek();
+                if (frame.children != null && frame.next < frame.children.size()) {
+                    N child = frame.children.get(frame.next++);
+                    stack.push(new Frame<>(child, forceChildren(frame.force, frame.matched), predicate.test(child), childGetter.apply(child)));
+                    continue;
+                }
+                stack.pop();
+                N kept = keep(frame.node, frame.force, frame.matched, frame.keptChildren);
+                Frame<N> parent = stack.peek();
+                if (parent == null) {
+                    result = kept;
+                } else if (kept != null) {
+                    if (parent.keptChildren == null) {
+                        parent.keptChildren = new ArrayList<>();
+                    }
+                    parent.keptChildren.add(kept);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class Frame<N> {
+        private final N node;
+        private final boolean force;
+        private final boolean matched;
+        private final List<N> children;
+        private int next;
+        private List<N> keptChildren;
+
+        private Frame(N node, boolean force, boolean matched, List<N> children) {
+            this.node = node;
+            this.force = force;
+            this.matched = matched;
+            this.children = children;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class RootsTask<N> extends RecursiveTask<List<N>> {
+        private final Filter<N> filter;
+        private final List<N> roots;
+
+        private RootsTask(Filter<N> filter, List<N> roots) {
+            this.filter = filter;
+            this.roots = roots;
+        }
+
+        @Override
+        protected List<N> compute() {
+            List<NodeTask<N>> tasks = new ArrayList<>(roots.size());
+            for (N root : roots) {
+                tasks.add(new NodeTask<>(filter, root, false, 0));
+            }
+            invokeAll(tasks);
+            List<N> result = new ArrayList<>();
+            for (NodeTask<N> task : tasks) {
+                N kept = task.join();
+                if (kept != null) {
+                    result.add(kept);
+                }
+            }
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class NodeTask<N> extends RecursiveTask<N> {
+        private final Filter<N> filter;
+        private final N node;
+        private final boolean force;
+        private final int depth;
+
+        private NodeTask(Filter<N> filter, N node, boolean force, int depth) {
+            this.filter = filter;
+            this.node = node;
+            this.force = force;
+            this.depth = depth;
+        }
+
+        @Override
+        protected N compute() {
+            List<N> children = filter.childGetter.apply(node);
+            if (depth >= PARALLEL_DEPTH || children == null || children.size() < 2) {
+                return filter.filterSubtree(node, force);
+            }
+            boolean matched = filter.predicate.test(node);
+            boolean forceChildren = filter.forceChildren(force, matched);
+            List<NodeTask<N>> tasks = new ArrayList<>(children.size());
+            for (N child : children) {
+                tasks.add(new NodeTask<>(filter, child, forceChildren, depth + 1));
+            }
+            invokeAll(tasks);
+            List<N> keptChildren = null;
+            for (NodeTask<N> task : tasks) {
+                N kept = task.join();
+                if (kept != null) {
+                    if (keptChildren == null) {
+                        keptChildren = new ArrayList<>();
+                    }
+                    keptChildren.add(kept);
+                }
+            }
+            return filter.keep(node, force, matched, keptChildren);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 可以增量维护的树索引
+ * <pre>
+ *  解决的问题：权限菜单树（auth_resource）一天只变化几次，但是每次请求都要查全表再用 TreeUtil.buildTree 重新构建
+ *  本类构建一次后常驻内存，数据变化时调用 add、update、move、remove 增量修改，读取时不需要加锁
+ *
+ *  实现方式：写时复制（路径复制）
+ *    1. 发布出去的树节点永远不会被修改，修改某个节点时，会创建这个节点和它所有祖先节点的新实例，
+ *       没有变化的子树直接复用旧实例，所以一次修改只会复制 O(深度) 个节点；
+ *       但是复制节点时要重新填充它的子节点列表，从兄弟节点中摘下节点也是线性查找，
+ *       所以一次修改的耗时是 O(路径上每个节点的子节点数之和)，一个父节点下有上万个子节点时，修改其中任何一个都要复制这个列表
+ *    2. 新的根节点列表通过 volatile 字段发布，读线程拿到的 getRoots() 是一个完整、一致的快照，
+ *       修改完成之前读到的仍然是旧的快照
+ *    3. 写操作之间使用 synchronized 串行化，适合读多写少的场景
+ *
+ *  注意：
+ *    1. nodeConvert 每次调用都必须返回新的节点实例，因为复制节点就是再调用一次 nodeConvert
+ *    2. 不要修改 getRoots()、getNode() 返回的节点和子节点列表，它们可能正在被其他线程读取
+ *    3. 父节点不存在的节点会保留在索引中，等父节点添加后自动挂上去
+ *
+ *  使用示例：
+ *     TreeIndex<AuthResource, TreeNodeRes, Long> index = new TreeIndex<>(list, TreeNodeRes::of,
+ *             AuthResource::getId, AuthResource::getParentId, pid -> pid == -1, TreeNodeRes::childs,
+ *             Comparator.comparing(AuthResource::getSort));
+ *     // 请求中直接读取
+ *     List<TreeNodeRes> roots = index.getRoots();
+ *     // 资源变化时增量修改
+ *     index.update(resource);
+ * </pre>
+ *
+ * @param <T> 原始数据类型
+ * @param <N> 树节点类型
+ * @param <K> id 和 父 id 的类型
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class TreeIndex<T, N, K> {
+    private final Function<T, N> nodeConvert;
+    private final Function<T, K> idExtr;
+    private final Function<T, K> pidExtr;
+    private final Function<K, Boolean> pidIsEmpty;
+    private final Function<N, List<N>> childExtr;
+    /**
+     * 兄弟节点的排序，为 null 时按添加顺序排列
+     */
+    private final Comparator<? super T> childComparator;
+
+    /**
+     * 以下结构只在写操作中访问，由 synchronized 保护
+     */
+    private final Map<K, Entry<T, N, K>> entries;
+    /**
+     * 父 id -> 子 id 列表，父节点可能还不存在
+     */
+    private final Map<K, List<K>> childIds;
+    private final List<K> rootIds = new ArrayList<>();
+
+    /**
+     * 读操作访问的结构
+     */
+    private final Map<K, N> nodes;
+    private volatile List<N> roots = Collections.emptyList();
+
+    /**
+     * 兄弟节点按 list 中的顺序排列
+     *
+     * @see #TreeIndex(Collection, Function, Function, Function, Function, Function, Comparator)
+     */
+    public TreeIndex(Collection<T> list,
+                     Function<T, N> nodeConvert,
+                     Function<T, K> idExtr,
+                     Function<T, K> pidExtr,
+                     Function<K, Boolean> pidIsEmpty,
+                     Function<N, List<N>> childExtr) {
+        this(list, nodeConvert, idExtr, pidExtr, pidIsEmpty, childExtr, null);
+    }
+
+    /**
+     * 参数含义和 TreeUtil.buildTree 一致
+     *
+     * @param list            原始列表，id 重复时以第一个出现的为准
+     * @param nodeConvert     将 list 中的元素转换为 tree node 元素，每次调用都必须返回新的实例
+     * @param idExtr          从元素中提取 id
+     * @param pidExtr         从元素中提取 pid
+     * @param pidIsEmpty      判定 pid 是否为空
+     * @param childExtr       子节点获取，如果子节点为空，需要自行初始化一个空的 list 并 set 到 treeNode 的子节点上
+     * @param childComparator 兄弟节点的排序，为 null 时按添加顺序排列
+     * @see TreeUtil#buildTree
+     */
+    public TreeIndex(Collection<T> list,
+                     Function<T, N> nodeConvert,
+                     Function<T, K> idExtr,
+                     Function<T, K> pidExtr,
+                     Function<K, Boolean> pidIsEmpty,
+                     Function<N, List<N>> childExtr,
+                     Comparator<? super T> childComparator) {
+        this.nodeConvert = Objects.requireNonNull(nodeConvert);
+        this.idExtr = Objects.requireNonNull(idExtr);
+        this.pidExtr = Objects.requireNonNull(pidExtr);
+        this.pidIsEmpty = Objects.requireNonNull(pidIsEmpty);
+        this.childExtr = Objects.requireNonNull(childExtr);
+        this.childComparator = childComparator;
+        int size = list == null ? 0 : list.size();
+        this.entries = LinkedHashMap.newLinkedHashMap(size);
+        this.childIds = HashMap.newHashMap(size);
+        this.nodes = new ConcurrentHashMap<>(Math.max(16, size * 4 / 3 + 1));
+        if (list != null) {
+            init(list);
+        }
+    }
+
+    /**
+     * 当前的根节点列表快照，不可修改
+     *
+     * @return
+     */
+    public List<N> getRoots() {
+        return roots;
+    }
+
+    /**
+     * 节点的最新实例
+     *
+     * @param id
+     * @return 不存在时返回 null
+     */
+    public N getNode(K id) {
+        return id == null ? null : nodes.get(id);
+    }
+
+    public boolean contains(K id) {
+        return getNode(id) != null;
+    }
+
+    /**
+     * 节点数量，包括父节点不存在的节点
+     *
+     * @return
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 添加节点，O(路径上每个节点的子节点数之和)
+     *
+     * @param row 新的数据
+     * @throws IllegalArgumentException id 已经存在，或者父节点是自己或自己的子孙节点（之前添加的、父节点不存在的节点）
+     */
+    public synchronized void add(T row) {
+        K id = idExtr.apply(row);
+        if (entries.containsKey(id)) {
+            throw new IllegalArgumentException("节点已经存在：" + id);
+        }
+        K pid = pidExtr.apply(row);
+        // 父节点可能是之前添加的、正在等待这个节点的子孙节点，挂上去后就成了环
+        checkCycle(id, pid);
+        Entry<T, N, K> entry = new Entry<>(row, id, pid);
+        entries.put(id, entry);
+        link(entry);
+        // 之前添加的子节点（父节点不存在的节点）会在这里挂上来
+        rebuild(entry);
+        publishRoots();
+    }
+
+    /**
+     * 修改节点数据，pid 变化时会移动到新的父节点下，O(路径上每个节点的子节点数之和)
+     *
+     * @param row 修改后的数据
+     * @throws IllegalArgumentException 节点不存在，或者新的父节点是自己的子孙节点
+     */
+    public synchronized void update(T row) {
+        K id = idExtr.apply(row);
+        Entry<T, N, K> entry = requireEntry(id);
+        K pid = pidExtr.apply(row);
+        if (!Objects.equals(pid, entry.pid)) {
+            checkCycle(id, pid);
+            detach(entry);
+            entry.row = row;
+            entry.pid = pid;
+            link(entry);
+        } else {
+            entry.row = row;
+            if (childComparator != null) {
+                // 排序字段可能变了，重新放置
+                unlink(entry);
+                link(entry);
+            }
+        }
+        rebuild(entry);
+        publishRoots();
+    }
+
+    /**
+     * 移动节点（包括子树）到新的父节点下，O(新旧两条路径上每个节点的子节点数之和)
+     * <pre>
+     *     只改变节点在树中的位置，节点对象本身是用原来的数据转换的；
+     *     如果节点对象中也有 pid 字段，请使用 update 传入修改了 pid 的新数据
+     * </pre>
+     *
+     * @param id          要移动的节点
+     * @param newParentId 新的父 id，满足 pidIsEmpty 时移动为根节点
+     * @throws IllegalArgumentException 节点不存在，或者新的父节点是自己的子孙节点
+     */
+    public synchronized void move(K id, K newParentId) {
+        Entry<T, N, K> entry = requireEntry(id);
+        if (Objects.equals(newParentId, entry.pid)) {
+            return;
+        }
+        checkCycle(id, newParentId);
+        detach(entry);
+        entry.pid = newParentId;
+        link(entry);
+        propagate(entry);
+        publishRoots();
+    }
+
+    /**
+     * 删除节点和它的所有子孙节点
+     *
+     * @param id
+     * @return 删除的节点数量，节点不存在时返回 0
+     */
+    public synchronized int remove(K id) {
+        Entry<T, N, K> entry = entries.get(id);
+        if (entry == null) {
+            return 0;
+        }
+        detach(entry);
+        int removed = 0;
+        Deque<K> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            K current = stack.pop();
+            if (entries.remove(current) == null) {
+                continue;
+            }
+            nodes.remove(current);
+            removed++;
+            List<K> children = childIds.remove(current);
+            if (children != null) {
+                children.forEach(stack::push);
+            }
+        }
+        publishRoots();
+        return removed;
+    }
+
+    private void init(Collection<T> list) {
+        for (T row : list) {
+            K id = idExtr.apply(row);
+            if (entries.containsKey(id)) {
+                continue;
+            }
+            Entry<T, N, K> entry = new Entry<>(row, id, pidExtr.apply(row));
+            entries.put(id, entry);
+            List<K> siblings = pidIsEmpty.apply(entry.pid) ? rootIds : childIds.computeIfAbsent(entry.pid, k -> new ArrayList<>());
+            siblings.add(id);
+        }
+        if (childComparator != null) {
+            Comparator<K> comparator = (a, b) -> childComparator.compare(entries.get(a).row, entries.get(b).row);
+            rootIds.sort(comparator);
+            childIds.values().forEach(children -> children.sort(comparator));
+        }
+
+        // 按后序遍历创建节点，保证创建节点时子节点都已经创建好了；不使用递归，避免很深的树栈溢出
+        Deque<Entry<T, N, K>> stack = new ArrayDeque<>();
+        for (Entry<T, N, K> start : entries.values()) {
+            if (start.node != null) {
+                continue;
+            }
+            start.building = true;
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                Entry<T, N, K> top = stack.peek();
+                boolean ready = true;
+                for (K childId : childIds.getOrDefault(top.id, List.of())) {
+                    Entry<T, N, K> child = entries.get(childId);
+                    if (child.node != null) {
+                        continue;
+                    }
+                    if (child.building) {
+                        throw new IllegalArgumentException("数据中存在循环引用：" + childId);
+                    }
+                    child.building = true;
+                    stack.push(child);
+                    ready = false;
+                }
+                if (ready) {
+                    stack.pop();
+                    top.building = false;
+                    top.node = createNode(top);
+                    nodes.put(top.id, top.node);
+                }
+            }
+        }
+        publishRoots();
+    }
+
+    /**
+     * 用数据和当前的子节点创建一个新的节点实例
+     */
+    private N createNode(Entry<T, N, K> entry) {
+        N node = nodeConvert.apply(entry.row);
+        List<K> children = childIds.get(entry.id);
+        if (children != null && !children.isEmpty()) {
+            List<N> childs = childExtr.apply(node);
+            for (K childId : children) {
+                childs.add(entries.get(childId).node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 重新创建节点，并向上复制到根
+     */
+    private void rebuild(Entry<T, N, K> entry) {
+        entry.node = createNode(entry);
+        nodes.put(entry.id, entry.node);
+        propagate(entry);
+    }
+
+    /**
+     * entry 的节点实例或位置变化后，沿着父节点向上逐个重新创建，直到根节点
+     * 这里不发布根节点列表，每个写操作完成后统一发布一次，读线程不会看到修改了一半的树
+     */
+    private void propagate(Entry<T, N, K> entry) {
+        Entry<T, N, K> current = entry;
+        while (!pidIsEmpty.apply(current.pid)) {
+            Entry<T, N, K> parent = entries.get(current.pid);
+            if (parent == null) {
+                // 父节点不存在，不在树中，不需要发布
+                return;
+            }
+            parent.node = createNode(parent);
+            nodes.put(parent.id, parent.node);
+            current = parent;
+        }
+    }
+
+    private void publishRoots() {
+        List<N> list = new ArrayList<>(rootIds.size());
+        for (K rootId : rootIds) {
+            list.add(entries.get(rootId).node);
+        }
+        roots = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 从父节点中摘下来，并更新原来的父节点
+     */
+    private void detach(Entry<T, N, K> entry) {
+        unlink(entry);
+        if (pidIsEmpty.apply(entry.pid)) {
+            return;
+        }
+        Entry<T, N, K> parent = entries.get(entry.pid);
+        if (parent != null) {
+            rebuild(parent);
+        }
+    }
+
+    /**
+     * 放入父节点的子 id 列表中，有排序时按顺序插入
+     */
+    private void link(Entry<T, N, K> entry) {
+        List<K> siblings = pidIsEmpty.apply(entry.pid) ? rootIds : childIds.computeIfAbsent(entry.pid, k -> new ArrayList<>());
+        if (childComparator == null) {
+            siblings.add(entry.id);
+            return;
+        }
+        // 插入到最后一个小于等于它的节点后面，排序值相同时保持添加顺序
+        int low = 0;
+        int high = siblings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (childComparator.compare(entries.get(siblings.get(mid)).row, entry.row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        siblings.add(low, entry.id);
+    }
+
+    private void unlink(Entry<T, N, K> entry) {
+        List<K> siblings = pidIsEmpty.apply(entry.pid) ? rootIds : childIds.get(entry.pid);
+        if (siblings != null) {
+            siblings.remove(entry.id);
+        }
+    }
+
+    /**
+     * 新的父节点不能是自己或者自己的子孙节点
+     */
+    private void checkCycle(K id, K newParentId) {
+        K current = newParentId;
+        while (!pidIsEmpty.apply(current)) {
+            if (Objects.equals(current, id)) {
+                throw new IllegalArgumentException("父节点不能是自己或者自己的子孙节点：" + id + " -> " + newParentId);
+            }
+            Entry<T, N, K> parent = entries.get(current);
+            if (parent == null) {
+                return;
+            }
+            current = parent.pid;
+        }
+    }
+
+    private Entry<T, N, K> requireEntry(K id) {
+        Entry<T, N, K> entry = entries.get(id);
+        if (entry == null) {
+            throw new IllegalArgumentException("节点不存在：" + id);
+        }
+        return entry;
+    }
+
+    private static class Entry<T, N, K> {
+        private T row;
+        private final K id;
+        private K pid;
+        /**
+         * 当前发布的节点实例
+         */
+        private N node;
+        /**
+         * 初始化时用于检测循环引用
+         */
+        private boolean building;
+
+        private Entry(T row, K id, K pid) {
+            this.row = row;
+            this.id = id;
+            this.pid = pid;
+        }
+    }
+}
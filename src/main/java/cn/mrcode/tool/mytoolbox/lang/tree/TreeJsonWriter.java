@@ -0,0 +1,241 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import com.alibaba.fastjson2.JSONWriter;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 树的流式 JSON 输出
+ * <pre>
+ *  解决的问题：服务中 TreeUtil.buildTree 的结果通常直接用 fastjson 序列化为字符串返回给前端，
+ *  需要先创建所有的节点对象，再生成完整的 JSON 字符串，大的菜单树、组织架构树会占用很多内存
+ *
+ *  本工具使用 fastjson2 的 JSONWriter 边遍历边输出，缓冲区超过 flushThreshold 就写入 OutputStream 并清空，
+ *  所以不会生成完整的 JSON 字符串，输出缓冲区的大小是有上限的；遍历不使用递归，很深的树也不会栈溢出
+ *  支持两种数据来源：
+ *    1. 已经构建好的树：write(roots, childGetter, out)，除了树本身，额外的内存只有输出缓冲区和 O(深度) 的遍历栈
+ *    2. 原始数据：write(rows, idExtr, pidExtr, pidIsEmpty, out)，内部使用 CompactTree 描述结构，不会创建节点对象，
+ *       但是 CompactTree 和按下标查找原始数据的数组都是 O(数据量) 的，只是比节点对象 + 完整字符串小得多
+ *
+ *  输出格式：[{"id":1,"name":"系统管理","children":[{"id":2,"name":"用户管理"}]}]
+ *  值为 null 的字段不输出；没有子节点时不输出子节点字段（可以通过 setWriteEmptyChildren 输出空数组）
+ *
+ *  使用示例：
+ *     TreeJsonWriter<AuthResource> writer = new TreeJsonWriter<>();
+ *     writer.addField("id", AuthResource::getId);
+ *     writer.addField("name", AuthResource::getName);
+ *     writer.addField("path", AuthResource::getPath);
+ *     writer.write(resources, AuthResource::getId, AuthResource::getParentId, pid -> pid == -1, response.getOutputStream());
+ * </pre>
+ *
+ * @param <T> 节点（或原始数据）类型
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class TreeJsonWriter<T> {
+    /**
+     * 字段名 -> 取值函数，按添加顺序输出
+     */
+    private final Map<String, Function<T, ?>> fields = new LinkedHashMap<>();
+    private String childrenFieldName = "children";
+    private boolean writeEmptyChildren;
+    /**
+     * 缓冲区超过此大小（字节）时写入 OutputStream
+     */
+    private int flushThreshold = 64 * 1024;
+
+    /**
+     * 添加输出的字段
+     *
+     * @param name   JSON 中的字段名
+     * @param getter 取值函数，值使用 fastjson2 的默认方式序列化
+     */
+    public void addField(String name, Function<T, ?> getter) {
+        fields.put(Objects.requireNonNull(name), Objects.requireNonNull(getter));
+    }
+
+    /**
+     * @param childrenFieldName 子节点列表的字段名，默认为 children
+     */
+    public void setChildrenFieldName(String childrenFieldName) {
+        this.childrenFieldName = Objects.requireNonNull(childrenFieldName);
+    }
+
+    /**
+     * @param writeEmptyChildren 没有子节点时是否输出空数组，默认不输出子节点字段
+     */
+    public void setWriteEmptyChildren(boolean writeEmptyChildren) {
+        this.writeEmptyChildren = writeEmptyChildren;
+    }
+
+    /**
+     * @param flushThreshold 缓冲区超过此大小（字节）时写入 OutputStream，默认 64KB
+     */
+    public void setFlushThreshold(int flushThreshold) {
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException("flushThreshold 必须大于 0");
+        }
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * 输出已经构建好的树
+     *
+     * @param roots       根节点列表
+     * @param childGetter 获取子节点列表，可以返回 null
+     * @param out         输出流，不会被关闭
+     */
+    @SneakyThrows(IOException.class)
+    public void write(List<T> roots, Function<T, List<T>> childGetter, OutputStream out) {
+        Objects.requireNonNull(childGetter);
+        try (JSONWriter writer = JSONWriter.ofUTF8()) {
+            writer.startArray();
+            Deque<Level<T>> stack = new ArrayDeque<>();
+            if (roots != null) {
+                stack.push(new Level<>(roots.iterator()));
+            }
+            while (!stack.isEmpty()) {
+                Level<T> level = stack.peek();
+                if (!level.children.hasNext()) {
+                    stack.pop();
+                    writer.endArray();
+                    if (!stack.isEmpty()) {
+                        writer.endObject();
+                    }
+                    continue;
+                }
+                if (level.written++ > 0) {
+                    writer.writeComma();
+                }
+                T node = level.children.next();
+                writeFields(writer, node);
+                List<T> children = childGetter.apply(node);
+                if (children != null && !children.isEmpty()) {
+                    writer.writeName(childrenFieldName);
+                    writer.writeColon();
+                    writer.startArray();
+                    stack.push(new Level<>(children.iterator()));
+                } else {
+                    endLeaf(writer);
+                }
+                if (writer.size() >= flushThreshold) {
+                    writer.flushTo(out);
+                }
+            }
+            if (roots == null) {
+                writer.endArray();
+            }
+            writer.flushTo(out);
+        }
+    }
+
+    /**
+     * 直接输出原始数据组成的树，不创建节点对象，参数含义和 TreeUtil.buildTree 一致
+     *
+     * @param rows       原始数据，兄弟节点按 rows 中的顺序输出，id 重复时以第一个出现的为准
+     * @param idExtr     从元素中提取 id
+     * @param pidExtr    从元素中提取 pid
+     * @param pidIsEmpty 判定 pid 是否为空
+     * @param out        输出流，不会被关闭
+     * @param <K>        id 和 父 id 的类型
+     */
+    @SneakyThrows(IOException.class)
+    public <K> void write(Collection<T> rows,
+                          Function<T, K> idExtr,
+                          Function<T, K> pidExtr,
+                          Function<K, Boolean> pidIsEmpty,
+                          OutputStream out) {
+        CompactTree<K> tree = CompactTree.build(rows, idExtr, pidExtr, pidIsEmpty);
+        Object[] rowsByIndex = new Object[tree.size()];
+        for (T row : rows == null ? List.<T>of() : rows) {
+            int index = tree.indexOf(idExtr.apply(row));
+            if (rowsByIndex[index] == null) {
+                rowsByIndex[index] = row;
+            }
+        }
+
+        try (JSONWriter writer = JSONWriter.ofUTF8()) {
+            writer.startArray();
+            int current = tree.getFirstRoot();
+            boolean first = true;
+            while (current >= 0) {
+                if (!first) {
+                    writer.writeComma();
+                }
+                first = false;
+                @SuppressWarnings("unchecked")
+                T row = (T) rowsByIndex[current];
+                writeFields(writer, row);
+                int child = tree.getFirstChild(current);
+                if (child >= 0) {
+                    writer.writeName(childrenFieldName);
+                    writer.writeColon();
+                    writer.startArray();
+                    current = child;
+                    first = true;
+                } else {
+                    endLeaf(writer);
+                    // 没有下一个兄弟节点时，逐层结束父节点，直到找到有下一个兄弟节点的祖先
+                    while (tree.getNextSibling(current) < 0 && tree.getParent(current) >= 0) {
+                        current = tree.getParent(current);
+                        writer.endArray();
+                        writer.endObject();
+                    }
+                    current = tree.getNextSibling(current);
+                }
+                if (writer.size() >= flushThreshold) {
+                    writer.flushTo(out);
+                }
+            }
+            writer.endArray();
+            writer.flushTo(out);
+        }
+    }
+
+    /**
+     * 开始节点对象并输出字段，不结束对象
+     */
+    private void writeFields(JSONWriter writer, T node) {
+        writer.startObject();
+        for (Map.Entry<String, Function<T, ?>> field : fields.entrySet()) {
+            Object value = field.getValue().apply(node);
+            if (value == null) {
+                continue;
+            }
+            writer.writeName(field.getKey());
+            writer.writeColon();
+            writer.writeAny(value);
+        }
+    }
+
+    private void endLeaf(JSONWriter writer) {
+        if (writeEmptyChildren) {
+            writer.writeName(childrenFieldName);
+            writer.writeColon();
+            writer.startArray();
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    private static class Level<T> {
+        private final Iterator<T> children;
+        private int written;
+
+        private Level(Iterator<T> children) {
+            this.children = children;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package cn.mrcode.tool.mytoolbox.lang.tree;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * @author mrcode
@@ -12,6 +21,11 @@ import java.util.stream.Collectors;
  * @since 0.1.0
  */
 public class TreeUtil {
+    /**
+     * ConcurrentHashMap 不支持 null key，并行构建时使用此对象代替 null
+     */
+    private static final Object NULL_KEY = new Object();
+
     /**
      * <pre>
      *     // 数据库查询 sql: select * from auth_resource where is_deleted = false order by sort
@@ -29,6 +43,9 @@ public class TreeUtil {
      *                     }
      *                     return childs;
      *                 });
+     *
+     *     每个元素的 id、pid 只提取一次，每个节点只查找一次父节点，时间复杂度 O(n)
+     *     id 重复时以第一个出现的为准，后面重复的元素会被忽略
      * </pre>
      *
      * @param list        原始列表，按照顺序排序
@@ -40,8 +57,9 @@ public class TreeUtil {
      * @param <T>         原始列表元素，一般是从数据库中查询出来的实体
      * @param <N>         转换后的 node 实体
      * @param <K>         id 和 父 id 的类型
-     * @return
+     * @return 根节点列表，list 为空时返回空列表
      */
+    @SuppressWarnings("unchecked")
     public static <T, N, K> List<N> buildTree(List<T> list,
                                               Function<T, N> nodeConvert,
                                               Function<T, K> idExtr,
@@ -49,24 +67,221 @@ public class TreeUtil {
                                               Function<K, Boolean> pidIsEmpty,
                                               Function<N, List<N>> childExtr) {
         if (list == null || list.isEmpty()) {
-            return null;
+            return new ArrayList<>();
         }
-        Map<K, N> map = list.stream().collect(Collectors.toMap(item -> idExtr.apply(item), item -> nodeConvert.apply(item)));
+        int size = list.size();
+        Map<K, N> map = HashMap.newHashMap(size);
+        // 第一遍：转换节点，同时记下每个节点的 pid，重复 id 的节点不会放入 nodes
+        Object[] nodes = new Object[size];
+        Object[] pids = new Object[size];
+        int n = 0;
+        for (T item : list) {
+            K id = idExtr.apply(item);
+            N node = nodeConvert.apply(item);
+            if (map.putIfAbsent(id, node) != null) {
+                continue;
+            }
+            nodes[n] = node;
+            pids[n] = pidExtr.apply(item);
+            n++;
+        }
+
+        // 第二遍：按原始顺序挂到父节点上，子节点的顺序和 list 中的顺序一致
         List<N> roots = new ArrayList<>();
-        for (T node : list) {
-            K id = idExtr.apply(node);
-            K parentId = pidExtr.apply(node);
+        for (int i = 0; i < n; i++) {
+            N node = (N) nodes[i];
+            K parentId = (K) pids[i];
             // 如果此 node 是 root 节点
             if (pidIsEmpty.apply(parentId)) {
-                roots.add(map.get(id));
+                roots.add(node);
             }
-            // 出现这种情况，一般是树结构数据构建不完整导致
-            if (!map.containsKey(parentId)) {
+            N parentNode = map.get(parentId);
+            // 为空时，一般是树结构数据构建不完整导致
+            if (parentNode != null) {
+                childExtr.apply(parentNode).add(node);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * 流式构建树，适合数据库游标等数据量很大、不想全部加载到内存中的场景
+     * <pre>
+     *     数据可以是任意顺序，子节点可以比父节点先到：先到的子节点暂存起来，等父节点到了再挂上去
+     *     每读取一个元素就转换为树节点，不会保留原始元素，原始元素在读取后就可以被回收，内存中基本只有一份树节点
+     *     全部读取完之后，使用 childComparator 对每个兄弟节点列表（包括根节点列表）排序，所以数据不需要预先排序
+     *     id 重复时以第一个出现的为准；父节点始终没有出现的节点会被丢弃（和 list 版本一致）
+     *
+     *     // 使用 MyBatis 游标，不需要 order by sort
+     *     try (Cursor<AuthResource> cursor = mapper.scanAll()) {
+     *         List<TreeNodeRes> roots = TreeUtil.buildTree(cursor.iterator(), TreeNodeRes::of,
+     *                 AuthResource::getId, AuthResource::getParentId, pid -> pid == -1, TreeNodeRes::childs,
+     *                 Comparator.comparing(TreeNodeRes::getSort));
+     *     }
+     * </pre>
+     *
+     * @param iterator        原始数据
+     * @param childComparator 兄弟节点的排序，为 null 时按读取的顺序排列
+     * @see #buildTree(List, Function, Function, Function, Function, Function)
+     */
+    public static <T, N, K> List<N> buildTree(Iterator<T> iterator,
+                                              Function<T, N> nodeConvert,
+                                              Function<T, K> idExtr,
+                                              Function<T, K> pidExtr,
+                                              Function<K, Boolean> pidIsEmpty,
+                                              Function<N, List<N>> childExtr,
+                                              Comparator<? super N> childComparator) {
+        List<N> roots = new ArrayList<>();
+        if (iterator == null) {
+            return roots;
+        }
+        Map<K, N> map = new HashMap<>();
+        // 父节点还没有出现的子节点，按父 id 暂存
+        Map<K, List<N>> pending = new HashMap<>();
+        // 有子节点的列表，最后统一排序
+        Set<List<N>> childLists = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (iterator.hasNext()) {
+            T item = iterator.next();
+            K id = idExtr.apply(item);
+            N node = nodeConvert.apply(item);
+            if (map.putIfAbsent(id, node) != null) {
                 continue;
             }
+            K parentId = pidExtr.apply(item);
+            List<N> waiting = pending.remove(id);
+            if (waiting != null) {
+                List<N> childs = childExtr.apply(node);
+                childs.addAll(waiting);
+                childLists.add(childs);
+            }
+            boolean isRoot = pidIsEmpty.apply(parentId);
+            if (isRoot) {
+                roots.add(node);
+            }
             N parentNode = map.get(parentId);
-            childExtr.apply(parentNode).add(map.get(id));
+            if (parentNode != null) {
+                List<N> childs = childExtr.apply(parentNode);
+                childs.add(node);
+                childLists.add(childs);
+            } else if (!isRoot) {
+                pending.computeIfAbsent(parentId, k -> new ArrayList<>()).add(node);
+            }
+        }
+        if (childComparator != null) {
+            roots.sort(childComparator);
+            childLists.forEach(childs -> childs.sort(childComparator));
+        }
+        return roots;
+    }
+
+    /**
+     * 流式构建树，stream 由调用方负责关闭
+     *
+     * @see #buildTree(Iterator, Function, Function, Function, Function, Function, Comparator)
+     */
+    public static <T, N, K> List<N> buildTree(Stream<T> stream,
+                                              Function<T, N> nodeConvert,
+                                              Function<T, K> idExtr,
+                                              Function<T, K> pidExtr,
+                                              Function<K, Boolean> pidIsEmpty,
+                                              Function<N, List<N>> childExtr,
+                                              Comparator<? super N> childComparator) {
+        return buildTree(stream == null ? null : stream.iterator(), nodeConvert, idExtr, pidExtr, pidIsEmpty, childExtr, childComparator);
+    }
+
+    /**
+     * 并行构建树，适合几十万以上节点的大树，结果和 buildTree 完全一致（包括子节点的顺序）
+     * <pre>
+     *     1. 并行：转换节点、提取 id 和 pid
+     *     2. 并行：建立 id 到下标的索引，id 重复时取下标最小的，所以和串行的结果一样是第一个出现的为准
+     *     3. 并行：查找每个节点的父节点下标
+     *     4. 串行：按父节点下标计数排序，得到每个父节点的子节点下标区间，区间内按原始下标升序，O(n)
+     *     5. 并行：按父节点分区挂载子节点，每个父节点的子节点列表只会被一个线程修改
+     *
+     *     nodeConvert、idExtr、pidExtr、pidIsEmpty、childExtr 会被多个线程同时调用，不能有共享的可变状态
+     * </pre>
+     *
+     * @see #buildTree(List, Function, Function, Function, Function, Function)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, N, K> List<N> buildTreeParallel(Collection<T> list,
+                                                      Function<T, N> nodeConvert,
+                                                      Function<T, K> idExtr,
+                                                      Function<T, K> pidExtr,
+                                                      Function<K, Boolean> pidIsEmpty,
+                                                      Function<N, List<N>> childExtr) {
+        if (list == null || list.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Object[] items = list.toArray();
+        int size = items.length;
+        Object[] nodes = new Object[size];
+        Object[] ids = new Object[size];
+        Object[] pids = new Object[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            T item = (T) items[i];
+            nodes[i] = nodeConvert.apply(item);
+            ids[i] = idExtr.apply(item);
+            pids[i] = pidExtr.apply(item);
+        });
+
+        Map<Object, Integer> index = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+        IntStream.range(0, size).parallel().forEach(i -> index.merge(maskNull(ids[i]), i, Math::min));
+
+        // 父节点下标：-1 表示没有父节点；被忽略的重复节点标记为 -2
+        int[] parents = new int[size];
+        boolean[] isRoot = new boolean[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            if (index.get(maskNull(ids[i])) != i) {
+                parents[i] = -2;
+                return;
+            }
+            K parentId = (K) pids[i];
+            isRoot[i] = pidIsEmpty.apply(parentId);
+            Integer parent = index.get(maskNull(parentId));
+            parents[i] = parent == null ? -1 : parent;
+        });
+
+        // 计数排序：children[start[p], start[p + 1]) 为父节点 p 的子节点下标，按原始下标升序
+        int[] start = new int[size + 1];
+        for (int parent : parents) {
+            if (parent >= 0) {
+                start[parent + 1]++;
+            }
+        }
+        for (int p = 0; p < size; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] children = new int[start[size]];
+        int[] cursor = new int[size];
+        System.arraycopy(start, 0, cursor, 0, size);
+        for (int i = 0; i < size; i++) {
+            int parent = parents[i];
+            if (parent >= 0) {
+                children[cursor[parent]++] = i;
+            }
+        }
+
+        IntStream.range(0, size).parallel().forEach(p -> {
+            if (start[p] == start[p + 1]) {
+                return;
+            }
+            List<N> childs = childExtr.apply((N) nodes[p]);
+            for (int c = start[p]; c < start[p + 1]; c++) {
+                childs.add((N) nodes[children[c]]);
+            }
+        });
+
+        List<N> roots = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (isRoot[i]) {
+                roots.add((N) nodes[i]);
+            }
         }
         return roots;
     }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
 }
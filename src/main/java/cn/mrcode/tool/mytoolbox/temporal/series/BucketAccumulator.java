@@ -0,0 +1,140 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+
+import java.util.Objects;
+
+/**
+ * 按时间桶聚合的累加器，每个桶的状态都保存在基本类型数组中，添加数据时不会创建任何对象
+ * <pre>
+ *     桶 i 代表 [startMillis + i * stepMillis, startMillis + (i + 1) * stepMillis)
+ *     FIRST/LAST 按数据的时间取值，不依赖数据的顺序，所以有序、无序的数据都只需要遍历一次
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+final class BucketAccumulator {
+    private final Aggregation aggregation;
+    private final long startMillis;
+    private final long stepMillis;
+    private final int size;
+    /**
+     * 每个桶的聚合值，AVG 时保存的是总和
+     */
+    private final double[] values;
+    private final long[] counts;
+    /**
+     * FIRST/LAST 时每个桶当前取值的数据时间
+     */
+    private final long[] times;
+
+    BucketAccumulator(Aggregation aggregation, long startMillis, long endMillis, long stepMillis) {
+        this.aggregation = Objects.requireNonNull(aggregation);
+        this.size = TimeSeriesUtils.timelineSize(startMillis, endMillis, stepMillis);
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.values = aggregation == Aggregation.COUNT ? null : new double[size];
+        this.counts = new long[size];
+        this.times = aggregation == Aggregation.FIRST || aggregation == Aggregation.LAST ? new long[size] : null;
+    }
+
+    /**
+     * 添加一个数据点
+     *
+     * @param time  毫秒时间戳
+     * @param value
+     * @return 不在时间线范围内时返回 false
+     */
+    boolean add(long time, double value) {
+        if (time < startMillis) {
+            return false;
+        }
+        long index = (time - startMillis) / stepMillis;
+        if (index >= size) {
+            return false;
+        }
+        int i = (int) index;
+        long count = counts[i]++;
+        if (count == 0) {
+            if (values != null) {
+                values[i] = value;
+            }
+            if (times != null) {
+                times[i] = time;
+            }
+            return true;
+        }
+        switch (aggregation) {
+            case SUM, AVG -> values[i] += value;
+            case MIN -> values[i] = Math.min(values[i], value);
+            case MAX -> values[i] = Math.max(values[i], value);
+            case FIRST -> {
+                if (time < times[i]) {
+                    values[i] = value;
+                    times[i] = time;
+                }
+            }
+            case LAST -> {
+                if (time >= times[i]) {
+                    values[i] = value;
+                    times[i] = time;
+                }
+            }
+            case COUNT -> {
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 桶的开始时间
+     *
+     * @param i
+     * @return
+     */
+    long bucketTime(int i) {
+        return startMillis + i * stepMillis;
+    }
+
+    long count(int i) {
+        return counts[i];
+    }
+
+    boolean isEmpty(int i) {
+        return counts[i] == 0;
+    }
+
+    /**
+     * 桶的聚合结果，空桶的结果没有意义，需要先用 isEmpty 判断
+     *
+     * @param i
+     * @return
+     */
+    double value(int i) {
+        return switch (aggregation) {
+            case COUNT -> counts[i];
+            case AVG -> values[i] / counts[i];
+            default -> values[i];
+        };
+    }
+
+    /**
+     * 导出所有桶的聚合结果
+     *
+     * @param emptyValue 空桶的值
+     * @return
+     */
+    double[] toArray(double emptyValue) {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = isEmpty(i) ? emptyValue : value(i);
+        }
+        return result;
+    }
+}
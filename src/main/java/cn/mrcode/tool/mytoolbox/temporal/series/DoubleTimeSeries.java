@@ -0,0 +1,494 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 列式存储的 double 时间序列
+ * <pre>
+ *  解决的问题：TimeSeriesUtils 只能处理 List<T> 装箱对象，1000 万个点的序列要占用几百 MB 堆内存
+ *  本类用两列基本类型存储：时间戳列（毫秒，升序）和值列，每个点固定 16 字节，支持三种存储方式：
+ *    1. 堆内：直接包装 long[]、double[]，不复制
+ *    2. 堆外：toDirect() 复制到直接内存，不占用堆，也不参与 GC 扫描
+ *    3. 文件：save() 保存到文件，load() 通过内存映射读取，由操作系统按需加载，打开大文件几乎不耗时；
+ *       内存映射不能主动释放，文件之后还要被覆盖时使用 loadToHeap() 读入堆内存
+ *
+ *  序列不可变，slice 返回的是共享底层存储的视图，不会复制数据
+ *  使用示例：
+ *     DoubleTimeSeries series = DoubleTimeSeries.of(metrics, Metric::getTimestamp, Metric::getValue);
+ *     double[] avg = series.slice(start, end).resample(start, end, 60_000, Aggregation.AVG, 0);
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class DoubleTimeSeries {
+    /**
+     * 文件头：魔数 "DTS1" 4 字节 + 保留 4 字节 + 点数量 8 字节
+     */
+    private static final int MAGIC = 0x44545331;
+    private static final int HEADER_SIZE = 16;
+    private static final int POINT_SIZE = Long.BYTES + Double.BYTES;
+    /**
+     * 文件使用固定的字节序，不同机器之间可以互相读取
+     */
+    private static final ByteOrder FILE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    /**
+     * loadToHeap、save 分块读写的缓冲区大小，是 8 的倍数
+     */
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final LongBuffer timestamps;
+    private final DoubleBuffer values;
+    private final int size;
+
+    /**
+     * 包装已经按时间升序排列的数组，不会复制数组，调用方之后不能再修改数组
+     *
+     * @param timestamps 毫秒时间戳，升序，可以有相同的时间
+     * @param values     和 timestamps 按下标一一对应的值
+     */
+    public DoubleTimeSeries(long[] timestamps, double[] values) {
+        this(LongBuffer.wrap(timestamps), DoubleBuffer.wrap(values));
+        for (int i = 1; i < timestamps.length; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                throw new IllegalArgumentException("timestamps 必须按升序排列，下标 " + i);
+            }
+        }
+    }
+
+    private DoubleTimeSeries(LongBuffer timestamps, DoubleBuffer values) {
+        if (timestamps.remaining() != values.remaining()) {
+            throw new IllegalArgumentException("timestamps 和 values 的长度不一致");
+        }
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = timestamps.remaining();
+    }
+
+    /**
+     * 从对象集合创建时间序列，数据不要求有序，会按时间稳定排序（相同时间的数据保持原来的顺序）
+     *
+     * @param data           原始数据
+     * @param timeExtractor  时间提取函数，毫秒时间戳
+     * @param valueExtractor 值提取函数
+     * @param <T>
+     * @return
+     */
+    public static <T> DoubleTimeSeries of(Collection<T> data, ToLongFunction<T> timeExtractor, ToDoubleFunction<T> valueExtractor) {
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(valueExtractor);
+        long[] ts = new long[data.size()];
+        double[] vs = new double[data.size()];
+        int n = 0;
+        boolean sorted = true;
+        for (T item : data) {
+            if (item == null) {
+                continue;
+            }
+            ts[n] = timeExtractor.applyAsLong(item);
+            vs[n] = valueExtractor.applyAsDouble(item);
+            if (n > 0 && ts[n] < ts[n - 1]) {
+                sorted = false;
+            }
+            n++;
+        }
+        if (n < ts.length) {
+            ts = Arrays.copyOf(ts, n);
+            vs = Arrays.copyOf(vs, n);
+        }
+        if (!sorted) {
+            sort(ts, vs);
+        }
+        return new DoubleTimeSeries(LongBuffer.wrap(ts), DoubleBuffer.wrap(vs));
+    }
+
+    /**
+     * 从文件加载时间序列，文件通过只读内存映射访问，不会读入堆内存
+     * <pre>
+     *  映射的生命周期：JDK 没有提供主动释放映射的方法，返回的序列以及它的所有 slice 都被 GC 回收后，映射才会释放
+     *  映射释放之前：
+     *    1. 文件被其他进程修改或截断时，读取到的数据会变化，甚至抛出 InternalError，所以不要修改已经加载的文件
+     *    2. Windows 上不能删除、替换被映射的文件，对同一个路径再次 save 会抛出 IOException（Linux、macOS 上没有这个限制）
+     *  需要定期覆盖同一个文件时，使用 {@link #loadToHeap(Path)}，或者每次保存到新的文件名
+     * </pre>
+     *
+     * @param path save 保存的文件
+     * @return
+     */
+    @SneakyThrows(IOException.class)
+    public static DoubleTimeSeries load(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 映射建立后关闭 channel 不影响映射的使用
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(FILE_ORDER);
+            int n = checkHeader(buffer, buffer.capacity(), path);
+            LongBuffer ts = buffer.slice(HEADER_SIZE, n * Long.BYTES).order(FILE_ORDER).asLongBuffer();
+            DoubleBuffer vs = buffer.slice(HEADER_SIZE + n * Long.BYTES, n * Double.BYTES).order(FILE_ORDER).asDoubleBuffer();
+            return new DoubleTimeSeries(ts, vs);
+        }
+    }
+
+    /**
+     * 从文件加载时间序列，复制到堆内存中，读取完成后文件就不再被占用，可以删除或者被再次 save 覆盖
+     *
+     * @param path save 保存的文件
+     * @return
+     */
+    @SneakyThrows(IOException.class)
+    public static DoubleTimeSeries loadToHeap(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 分块读取，不需要先把整个文件读成 byte[] 再转换
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(FILE_ORDER);
+            buffer.limit(HEADER_SIZE);
+            readFully(channel, buffer);
+            int n = checkHeader(buffer, channel.size(), path);
+            long[] ts = new long[n];
+            double[] vs = new double[n];
+            buffer.clear();
+            LongBuffer tsDst = LongBuffer.wrap(ts);
+            while (tsDst.hasRemaining()) {
+                buffer.limit(Math.min(buffer.capacity(), tsDst.remaining() * Long.BYTES));
+                readFully(channel, buffer);
+                tsDst.put(buffer.asLongBuffer());
+                buffer.clear();
+            }
+            DoubleBuffer vsDst = DoubleBuffer.wrap(vs);
+            while (vsDst.hasRemaining()) {
+                buffer.limit(Math.min(buffer.capacity(), vsDst.remaining() * Double.BYTES));
+                readFully(channel, buffer);
+                vsDst.put(buffer.asDoubleBuffer());
+                buffer.clear();
+            }
+            return new DoubleTimeSeries(LongBuffer.wrap(ts), DoubleBuffer.wrap(vs));
+        }
+    }
+
+    /**
+     * 保存到文件，先写临时文件再原子替换，写入过程中崩溃不会破坏已有的文件
+     * <pre>
+     *  临时文件使用普通的写入而不是内存映射，写完就不再被占用，可以马上被重命名
+     *  注意：Windows 上目标文件正在被 {@link #load(Path)} 映射时，替换会抛出 IOException，见 load 的说明
+     * </pre>
+     *
+     * @param path
+     */
+    @SneakyThrows(IOException.class)
+    public void save(Path path) {
+        long fileSize = HEADER_SIZE + (long) size * POINT_SIZE;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("时间序列太大，单个文件最多保存 " + (Integer.MAX_VALUE - HEADER_SIZE) / POINT_SIZE + " 个点");
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(FILE_ORDER);
+            buffer.putInt(MAGIC).putInt(0).putLong(size);
+            LongBuffer ts = timestamps.duplicate();
+            while (ts.hasRemaining()) {
+                int count = Math.min(ts.remaining(), buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(ts.slice(ts.position(), count));
+                ts.position(ts.position() + count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                if (buffer.remaining() < Long.BYTES) {
+                    writeFully(channel, buffer);
+                }
+            }
+            DoubleBuffer vs = values.duplicate();
+            while (vs.hasRemaining()) {
+                int count = Math.min(vs.remaining(), buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(vs.slice(vs.position(), count));
+                vs.position(vs.position() + count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                if (buffer.remaining() < Double.BYTES) {
+                    writeFully(channel, buffer);
+                }
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 检查文件头
+     *
+     * @param header   文件头，读取位置从 0 开始
+     * @param fileSize 文件大小
+     * @return 点数量
+     */
+    private static int checkHeader(ByteBuffer header, long fileSize, Path path) {
+        if (fileSize < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("不是时间序列文件：" + path);
+        }
+        long count = header.getLong(8);
+        if (count < 0 || HEADER_SIZE + count * POINT_SIZE > fileSize) {
+            throw new IllegalArgumentException("时间序列文件不完整：" + path);
+        }
+        return (int) count;
+    }
+
+    /**
+     * 读满 buffer 的 position 到 limit，读取后 buffer 切换为读模式（flip）
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("时间序列文件不完整");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * 写出 buffer 中的数据，写完后清空 buffer
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 复制到堆外内存，时间戳和值分别保存在一个直接内存 buffer 中，单个 buffer 最大 2GB
+     *
+     * @return
+     */
+    public DoubleTimeSeries toDirect() {
+        if (size > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalStateException("时间序列太大，堆外内存最多保存 " + Integer.MAX_VALUE / Long.BYTES + " 个点");
+        }
+        LongBuffer ts = ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        DoubleBuffer vs = ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        ts.put(timestamps.duplicate()).flip();
+        vs.put(values.duplicate()).flip();
+        return new DoubleTimeSeries(ts, vs);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        Objects.checkIndex(index, size);
+        return timestamps.get(timestamps.position() + index);
+    }
+
+    public double getValue(int index) {
+        Objects.checkIndex(index, size);
+        return values.get(values.position() + index);
+    }
+
+    /**
+     * 第一个时间大于等于 time 的下标，没有时返回 size()
+     *
+     * @param time 毫秒时间戳
+     * @return
+     */
+    public int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        int offset = timestamps.position();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps.get(offset + mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个时间大于 time 的下标，没有时返回 size()
+     *
+     * @param time 毫秒时间戳
+     * @return
+     */
+    public int upperBound(long time) {
+        return time == Long.MAX_VALUE ? size : lowerBound(time + 1);
+    }
+
+    /**
+     * 截取 [fromMillis, toMillis) 时间范围内的数据，二分查找定位，返回共享底层存储的视图
+     *
+     * @param fromMillis 开始时间（包含）
+     * @param toMillis   结束时间（不包含）
+     * @return
+     */
+    public DoubleTimeSeries slice(long fromMillis, long toMillis) {
+        int from = lowerBound(fromMillis);
+        int to = Math.max(from, lowerBound(toMillis));
+        return sliceByIndex(from, to);
+    }
+
+    /**
+     * 按下标截取 [from, to) 范围内的数据，返回共享底层存储的视图
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public DoubleTimeSeries sliceByIndex(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        return new DoubleTimeSeries(timestamps.slice(timestamps.position() + from, to - from),
+                values.slice(values.position() + from, to - from));
+    }
+
+    /**
+     * 重采样，只会遍历 [startMillis, endMillis] 时间线范围内的数据
+     *
+     * @param startMillis 开始时间（包含）
+     * @param endMillis   结束时间（包含）
+     * @param stepMillis  桶的大小
+     * @param aggregation 聚合方式
+     * @param emptyValue  空桶的值
+     * @return 每个桶的聚合结果，下标 i 对应的桶开始时间为 startMillis + i * stepMillis
+     * @see TimeSeriesResampler
+     */
+    public double[] resample(long startMillis, long endMillis, long stepMillis, Aggregation aggregation, double emptyValue) {
+        return accumulate(startMillis, endMillis, stepMillis, aggregation).toArray(emptyValue);
+    }
+
+    /**
+     * 对齐到 [startMillis, endMillis] 按 stepMillis 划分的时间线，返回新的时间序列，每个时间点一个值
+     *
+     * @param aggregation 同一个桶中有多个点时的聚合方式
+     * @param emptyValue  缺失时间点的值
+     * @return
+     */
+    public DoubleTimeSeries align(long startMillis, long endMillis, long stepMillis, Aggregation aggregation, double emptyValue) {
+        BucketAccumulator accumulator = accumulate(startMillis, endMillis, stepMillis, aggregation);
+        long[] ts = new long[accumulator.size()];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = accumulator.bucketTime(i);
+        }
+        return new DoubleTimeSeries(LongBuffer.wrap(ts), DoubleBuffer.wrap(accumulator.toArray(emptyValue)));
+    }
+
+    /**
+     * 填充缺失时间点，同一个桶中有多个点时取最后一个
+     *
+     * @see #align(long, long, long, Aggregation, double)
+     */
+    public DoubleTimeSeries fill(long startMillis, long endMillis, long stepMillis, double emptyValue) {
+        return align(startMillis, endMillis, stepMillis, Aggregation.LAST, emptyValue);
+    }
+
+    /**
+     * 遍历所有的点
+     *
+     * @param consumer
+     */
+    public void forEach(PointConsumer consumer) {
+        int tsOffset = timestamps.position();
+        int vsOffset = values.position();
+        for (int i = 0; i < size; i++) {
+            consumer.accept(timestamps.get(tsOffset + i), values.get(vsOffset + i));
+        }
+    }
+
+    /**
+     * 复制出时间戳数组
+     *
+     * @return
+     */
+    public long[] toTimestampArray() {
+        long[] result = new long[size];
+        timestamps.duplicate().get(result);
+        return result;
+    }
+
+    /**
+     * 复制出值数组
+     *
+     * @return
+     */
+    public double[] toValueArray() {
+        double[] result = new double[size];
+        values.duplicate().get(result);
+        return result;
+    }
+
+    private BucketAccumulator accumulate(long startMillis, long endMillis, long stepMillis, Aggregation aggregation) {
+        BucketAccumulator accumulator = new BucketAccumulator(aggregation, startMillis, endMillis, stepMillis);
+        // 最后一个桶的结束时间，数据有序，只需要遍历时间线范围内的部分
+        long lastBucketEnd = accumulator.bucketTime(accumulator.size() - 1) + stepMillis;
+        int from = lowerBound(startMillis);
+        int to = lastBucketEnd < startMillis ? size : lowerBound(lastBucketEnd);
+        int tsOffset = timestamps.position();
+        int vsOffset = values.position();
+        for (int i = from; i < to; i++) {
+            accumulator.add(timestamps.get(tsOffset + i), values.get(vsOffset + i));
+        }
+        return accumulator;
+    }
+
+    /**
+     * 按时间稳定排序（归并排序），值数组跟着时间戳一起移动
+     */
+    private static void sort(long[] ts, double[] vs) {
+        int n = ts.length;
+        long[] tsTmp = new long[n];
+        double[] vsTmp = new double[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int low = 0; low < n; low += width << 1) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(low + (width << 1), n);
+                int i = low, j = mid, k = low;
+                while (i < mid && j < high) {
+                    if (ts[j] < ts[i]) {
+                        tsTmp[k] = ts[j];
+                        vsTmp[k++] = vs[j++];
+                    } else {
+                        tsTmp[k] = ts[i];
+                        vsTmp[k++] = vs[i++];
+                    }
+                }
+                while (i < mid) {
+                    tsTmp[k] = ts[i];
+                    vsTmp[k++] = vs[i++];
+                }
+                while (j < high) {
+                    tsTmp[k] = ts[j];
+                    vsTmp[k++] = vs[j++];
+                }
+            }
+            System.arraycopy(tsTmp, 0, ts, 0, n);
+            System.arraycopy(vsTmp, 0, vs, 0, n);
+        }
+    }
+
+    /**
+     * 时间序列中的点的消费函数
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+}
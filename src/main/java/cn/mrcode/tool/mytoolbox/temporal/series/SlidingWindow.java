@@ -0,0 +1,427 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 基于时间的滑动窗口聚合
+ * <pre>
+ *  解决的问题：告警需要计算最近 N 分钟的 移动平均、总和、最大最小值，每来一个点就重新扫描一遍窗口，复杂度为 O(n * w)
+ *  本类增量维护窗口内的聚合结果，每个点只进出窗口各一次：
+ *    1. SUM/AVG/COUNT：维护累加值，O(1)
+ *    2. MIN/MAX：单调队列，队列中只保留可能成为最值的点，均摊 O(1)
+ *    3. 分位数（可选）：按值的对数分桶计数，相对误差不超过 relativeAccuracy，添加、移出都是 O(1)
+ *
+ *  窗口范围为 (最新时间 - windowMillis, 最新时间]，数据必须按时间顺序添加（时间可以相同）
+ *  值为 NaN 的点会被忽略（比如 fill 时使用 NaN 填充的缺失点），但是仍然会推进窗口
+ *  非线程安全，多个线程同时添加数据时需要调用方加锁
+ *
+ *  使用示例：
+ *     // 实时计算：最近 5 分钟的平均值和 P99
+ *     SlidingWindow window = new SlidingWindow(TimeUnit.MINUTES.toMillis(5), 0.01);
+ *     window.add(System.currentTimeMillis(), latency);
+ *     if (window.avg() > 100 || window.quantile(0.99) > 500) { ... }
+ *
+ *     // 对已有的时间序列计算移动平均
+ *     double[] ma = SlidingWindow.rolling(series, 60_000, Aggregation.AVG);
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class SlidingWindow {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long windowMillis;
+    /**
+     * 窗口内的点，环形数组，用全局递增的序号定位：下标为 seq & mask
+     */
+    private long[] times;
+    private double[] values;
+    private int mask;
+    /**
+     * 最早的点的序号
+     */
+    private long head;
+    /**
+     * 下一个点的序号
+     */
+    private long tail;
+    private double sum;
+    /**
+     * 单调队列，保存点的序号，minQueue 中的值单调递增，maxQueue 中的值单调递减
+     */
+    private long[] minQueue;
+    private long minHead;
+    private long minTail;
+    private long[] maxQueue;
+    private long maxHead;
+    private long maxTail;
+    /**
+     * 最新的时间
+     */
+    private long now = Long.MIN_VALUE;
+    /**
+     * 分位数估算，为 null 表示没有开启
+     */
+    private final QuantileCounter quantiles;
+
+    /**
+     * @param windowMillis 窗口大小，毫秒
+     */
+    public SlidingWindow(long windowMillis) {
+        this(windowMillis, 0);
+    }
+
+    /**
+     * @param windowMillis     窗口大小，毫秒
+     * @param relativeAccuracy 分位数的相对误差，比如 0.01 表示 1%；小于等于 0 表示不需要分位数
+     */
+    public SlidingWindow(long windowMillis, double relativeAccuracy) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis 必须大于 0");
+        }
+        if (relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy 必须小于 1");
+        }
+        this.windowMillis = windowMillis;
+        this.times = new long[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.minQueue = new long[INITIAL_CAPACITY];
+        this.maxQueue = new long[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+        this.quantiles = relativeAccuracy > 0 ? new QuantileCounter(relativeAccuracy) : null;
+    }
+
+    /**
+     * 对时间序列计算滑动窗口聚合
+     *
+     * @param series       时间序列，比如 DoubleTimeSeries.fill 的结果
+     * @param windowMillis 窗口大小，毫秒
+     * @param aggregation  聚合方式
+     * @return 下标 i 为以第 i 个点结束的窗口的聚合结果，窗口内没有数据时为 NaN（COUNT 为 0）
+     */
+    public static double[] rolling(DoubleTimeSeries series, long windowMillis, Aggregation aggregation) {
+        Objects.requireNonNull(aggregation);
+        SlidingWindow window = new SlidingWindow(windowMillis);
+        double[] result = new double[series.size()];
+        for (int i = 0; i < result.length; i++) {
+            window.add(series.getTimestamp(i), series.getValue(i));
+            result[i] = window.get(aggregation);
+        }
+        return result;
+    }
+
+    /**
+     * 对按时间升序排列的数据计算滑动窗口聚合，比如 TimeSeriesUtils.fillMissingTimePoints 的结果
+     *
+     * @see #rolling(DoubleTimeSeries, long, Aggregation)
+     */
+    public static <T> double[] rolling(List<T> sortedData,
+                                       ToLongFunction<T> timeExtractor,
+                                       ToDoubleFunction<T> valueExtractor,
+                                       long windowMillis,
+                                       Aggregation aggregation) {
+        Objects.requireNonNull(aggregation);
+        SlidingWindow window = new SlidingWindow(windowMillis);
+        double[] result = new double[sortedData.size()];
+        int i = 0;
+        for (T item : sortedData) {
+            window.add(timeExtractor.applyAsLong(item), valueExtractor.applyAsDouble(item));
+            result[i++] = window.get(aggregation);
+        }
+        return result;
+    }
+
+    /**
+     * 对时间序列计算滑动窗口分位数
+     *
+     * @param q                分位数，0 ~ 1，比如 0.99
+     * @param relativeAccuracy 相对误差，比如 0.01
+     * @see #rolling(DoubleTimeSeries, long, Aggregation)
+     */
+    public static double[] rollingQuantile(DoubleTimeSeries series, long windowMillis, double q, double relativeAccuracy) {
+        SlidingWindow window = new SlidingWindow(windowMillis, relativeAccuracy);
+        double[] result = new double[series.size()];
+        for (int i = 0; i < result.length; i++) {
+            window.add(series.getTimestamp(i), series.getValue(i));
+            result[i] = window.quantile(q);
+        }
+        return result;
+    }
+
+    /**
+     * 添加一个点，并移出超出窗口的点
+     *
+     * @param time  毫秒时间戳，不能早于上一次添加的时间
+     * @param value 值，NaN 会被忽略
+     */
+    public void add(long time, double value) {
+        advance(time);
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (tail - head == times.length) {
+            grow();
+        }
+        long seq = tail++;
+        int index = (int) (seq & mask);
+        times[index] = time;
+        values[index] = value;
+        sum += value;
+
+        while (minTail > minHead && valueOf(minQueue[(int) ((minTail - 1) & mask)]) > value) {
+            minTail--;
+        }
+        minQueue[(int) (minTail++ & mask)] = seq;
+        while (maxTail > maxHead && valueOf(maxQueue[(int) ((maxTail - 1) & mask)]) < value) {
+            maxTail--;
+        }
+        maxQueue[(int) (maxTail++ & mask)] = seq;
+
+        if (quantiles != null) {
+            quantiles.add(value, 1);
+        }
+    }
+
+    /**
+     * 只推进时间，移出超出窗口的点；没有新数据时，定时调用此方法可以让窗口随时间滑动
+     *
+     * @param time 毫秒时间戳，不能早于上一次的时间
+     */
+    public void advance(long time) {
+        if (time < now) {
+            throw new IllegalArgumentException("时间不能倒退：%s < %s".formatted(time, now));
+        }
+        now = time;
+        long expired = time - windowMillis;
+        while (head < tail && times[(int) (head & mask)] <= expired) {
+            double value = values[(int) (head & mask)];
+            sum -= value;
+            if (minQueue[(int) (minHead & mask)] == head) {
+                minHead++;
+            }
+            if (maxQueue[(int) (maxHead & mask)] == head) {
+                maxHead++;
+            }
+            if (quantiles != null) {
+                quantiles.add(value, -1);
+            }
+            head++;
+        }
+        if (head == tail) {
+            // 窗口为空时清掉浮点数累加误差
+            sum = 0;
+        }
+    }
+
+    /**
+     * 窗口内的点的数量
+     *
+     * @return
+     */
+    public int count() {
+        return (int) (tail - head);
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    /**
+     * @return 窗口为空时返回 NaN
+     */
+    public double avg() {
+        return head == tail ? Double.NaN : sum / (tail - head);
+    }
+
+    /**
+     * @return 窗口为空时返回 NaN
+     */
+    public double min() {
+        return head == tail ? Double.NaN : valueOf(minQueue[(int) (minHead & mask)]);
+    }
+
+    /**
+     * @return 窗口为空时返回 NaN
+     */
+    public double max() {
+        return head == tail ? Double.NaN : valueOf(maxQueue[(int) (maxHead & mask)]);
+    }
+
+    /**
+     * 窗口内最早的点的值
+     *
+     * @return 窗口为空时返回 NaN
+     */
+    public double first() {
+        return head == tail ? Double.NaN : valueOf(head);
+    }
+
+    /**
+     * 窗口内最新的点的值
+     *
+     * @return 窗口为空时返回 NaN
+     */
+    public double last() {
+        return head == tail ? Double.NaN : valueOf(tail - 1);
+    }
+
+    /**
+     * 按聚合方式获取结果
+     *
+     * @param aggregation
+     * @return
+     */
+    public double get(Aggregation aggregation) {
+        return switch (aggregation) {
+            case SUM -> head == tail ? Double.NaN : sum;
+            case AVG -> avg();
+            case MIN -> min();
+            case MAX -> max();
+            case COUNT -> count();
+            case FIRST -> first();
+            case LAST -> last();
+        };
+    }
+
+    /**
+     * 近似分位数，需要在构造时指定 relativeAccuracy
+     *
+     * @param q 分位数，0 ~ 1
+     * @return 窗口为空时返回 NaN
+     */
+    public double quantile(double q) {
+        if (quantiles == null) {
+            throw new IllegalStateException("没有开启分位数，需要在构造时指定 relativeAccuracy");
+        }
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q 必须在 0 ~ 1 之间");
+        }
+        if (head == tail) {
+            return Double.NaN;
+        }
+        long count = tail - head;
+        long rank = (long) Math.floor(q * (count - 1));
+        // 两端直接使用单调队列中准确的最大最小值，中间的估算值也限制在最大最小值之间
+        if (rank == 0) {
+            return min();
+        }
+        if (rank == count - 1) {
+            return max();
+        }
+        return Math.max(min(), Math.min(max(), quantiles.quantile(rank)));
+    }
+
+    private double valueOf(long seq) {
+        return values[(int) (seq & mask)];
+    }
+
+    /**
+     * 扩容为 2 倍，序号不变，只需要按新的 mask 重新放置
+     */
+    private void grow() {
+        int capacity = times.length << 1;
+        int newMask = capacity - 1;
+        long[] newTimes = new long[capacity];
+        double[] newValues = new double[capacity];
+        for (long seq = head; seq < tail; seq++) {
+            newTimes[(int) (seq & newMask)] = times[(int) (seq & mask)];
+            newValues[(int) (seq & newMask)] = values[(int) (seq & mask)];
+        }
+        minQueue = growQueue(minQueue, minHead, minTail, newMask);
+        maxQueue = growQueue(maxQueue, maxHead, maxTail, newMask);
+        times = newTimes;
+        values = newValues;
+        mask = newMask;
+    }
+
+    private long[] growQueue(long[] queue, long from, long to, int newMask) {
+        long[] result = new long[newMask + 1];
+        for (long p = from; p < to; p++) {
+            result[(int) (p & newMask)] = queue[(int) (p & mask)];
+        }
+        return result;
+    }
+
+    /**
+     * 按值的对数分桶计数的分位数估算
+     * <pre>
+     *     正数 v 放入下标为 ceil(log(v) / log(gamma)) 的桶，gamma = (1 + a) / (1 - a)，
+     *     桶内的值都用 2 * gamma^i / (gamma + 1) 估算，相对误差不超过 a；负数按绝对值放入另一组桶
+     *     只覆盖 1e-9 ~ 1e15 的绝对值范围，超出范围的值放入两端的桶中
+     * </pre>
+     */
+    private static class QuantileCounter {
+        private static final double MIN_VALUE = 1e-9;
+        private static final double MAX_VALUE = 1e15;
+
+        private final double logGamma;
+        private final double gamma;
+        private final int minIndex;
+        private final long[] positive;
+        private final long[] negative;
+        private long zero;
+
+        private QuantileCounter(double relativeAccuracy) {
+            this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+            this.logGamma = Math.log(gamma);
+            this.minIndex = (int) Math.floor(Math.log(MIN_VALUE) / logGamma);
+            int maxIndex = (int) Math.ceil(Math.log(MAX_VALUE) / logGamma);
+            this.positive = new long[maxIndex - minIndex + 1];
+            this.negative = new long[maxIndex - minIndex + 1];
+        }
+
+        private void add(double value, int delta) {
+            if (value > 0) {
+                positive[bucket(value)] += delta;
+            } else if (value < 0) {
+                negative[bucket(-value)] += delta;
+            } else {
+                zero += delta;
+            }
+        }
+
+        private int bucket(double abs) {
+            if (abs <= MIN_VALUE) {
+                return 0;
+            }
+            int index = (int) Math.ceil(Math.log(abs) / logGamma) - minIndex;
+            return Math.min(index, positive.length - 1);
+        }
+
+        private double estimate(int bucket) {
+            return 2 * Math.pow(gamma, bucket + minIndex) / (gamma + 1);
+        }
+
+        /**
+         * @param rank 从小到大排序后的第几个值，从 0 开始
+         */
+        private double quantile(long rank) {
+            long seen = 0;
+            // 负数按绝对值从大到小，也就是值从小到大
+            for (int i = negative.length - 1; i >= 0; i--) {
+                seen += negative[i];
+                if (seen > rank) {
+                    return -estimate(i);
+                }
+            }
+            seen += zero;
+            if (seen > rank) {
+                return 0;
+            }
+            for (int i = 0; i < positive.length; i++) {
+                seen += positive[i];
+                if (seen > rank) {
+                    return estimate(i);
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -1,10 +1,36 @@
 package cn.mrcode.tool.mytoolbox.temporal.series;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAmount;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 时间序列处理工具
@@ -17,6 +43,7 @@ public class TimeSeriesUtils {
      * 填充缺失时间点数据
      * <pre>
      *     将按照 fullTimeline 时间序列填充缺失的数据，缺失的数据使用 defaultValueGenerator 生成
+     *     原始数据中有相同时间点的数据时，会抛出 IllegalStateException，如果需要合并请使用带 mergeFunction 参数的方法
      * </pre>
      *
      * @param rawData               原始数据
@@ -31,19 +58,706 @@ public class TimeSeriesUtils {
                                                        List<K> fullTimeline,
                                                        Function<T, K> timeExtractor,
                                                        Function<K, T> defaultValueGenerator) {
+        return fillMissingTimePoints(rawData, fullTimeline, timeExtractor, defaultValueGenerator, null);
+    }
+
+    /**
+     * 填充缺失时间点数据
+     * <pre>
+     *     将按照 fullTimeline 时间序列填充缺失的数据，只有缺失的时间点才会调用 defaultValueGenerator 生成默认值
+     * </pre>
+     *
+     * @param rawData               原始数据，不要求有序
+     * @param fullTimeline          时间列表，会按此时间表填充数据
+     * @param timeExtractor         原始数据的时间提取函数
+     * @param defaultValueGenerator 填充数据的函数，当数据为空的时候会调用此函数返回一个默认值的对象
+     * @param mergeFunction         原始数据中有相同时间点的数据时的合并函数，为 null 时遇到相同时间点会抛出 IllegalStateException
+     * @param <T>                   原始数据类型
+     * @param <K>                   时间类型
+     * @return
+     */
+    public static <T, K> List<T> fillMissingTimePoints(List<T> rawData,
+                                                       List<K> fullTimeline,
+                                                       Function<T, K> timeExtractor,
+                                                       Function<K, T> defaultValueGenerator,
+                                                       BinaryOperator<T> mergeFunction) {
         Objects.requireNonNull(rawData);
         Objects.requireNonNull(fullTimeline);
         Objects.requireNonNull(timeExtractor);
         Objects.requireNonNull(defaultValueGenerator);
 
-        // 使用 timeExtractor 函数将 list 转换为 Map，键为 K 类型，值为 T 类型
-        Map<K, T> dataMap = rawData.stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(timeExtractor, Function.identity()));
+        // 将 list 转换为 Map，键为 K 类型，值为 T 类型
+        Map<K, T> dataMap = HashMap.newHashMap(rawData.size());
+        for (T item : rawData) {
+            if (item == null) {
+                continue;
+            }
+            K time = timeExtractor.apply(item);
+            T exists = dataMap.putIfAbsent(time, item);
+            if (exists != null) {
+                dataMap.put(time, merge(mergeFunction, time, exists, item));
+            }
+        }
+
+        // 按时间序列顺序构建数据，只有缺失的时间点才生成默认值
+        List<T> result = new ArrayList<>(fullTimeline.size());
+        for (K time : fullTimeline) {
+            T item = dataMap.get(time);
+            result.add(item != null ? item : defaultValueGenerator.apply(time));
+        }
+        return result;
+    }
+
+    /**
+     * 填充缺失时间点数据：原始数据和时间列表都已经按时间升序排列时使用
+     * <pre>
+     *     使用归并的方式一次遍历完成，不需要构建 Map，时间复杂度 O(n)
+     *     原始数据中不在时间列表中的时间点会被忽略
+     * </pre>
+     *
+     * @param sortedRawData         原始数据，按时间升序排列
+     * @param sortedTimeline        时间列表，按时间升序排列
+     * @param timeExtractor         原始数据的时间提取函数
+     * @param defaultValueGenerator 填充数据的函数，当数据为空的时候会调用此函数返回一个默认值的对象
+     * @param mergeFunction         原始数据中有相同时间点的数据时的合并函数，为 null 时遇到相同时间点会抛出 IllegalStateException
+     * @param <T>                   原始数据类型
+     * @param <K>                   时间类型
+     * @return
+     */
+    public static <T, K extends Comparable<? super K>> List<T> fillMissingTimePointsSorted(List<T> sortedRawData,
+                                                                                         List<K> sortedTimeline,
+                                                                                         Function<T, K> timeExtractor,
+                                                                                         Function<K, T> defaultValueGenerator,
+                                                                                         BinaryOperator<T> mergeFunction) {
+        return fillMissingTimePointsSorted(sortedRawData, sortedTimeline, timeExtractor, defaultValueGenerator, mergeFunction,
+                Comparator.naturalOrder());
+    }
+
+    /**
+     * 填充缺失时间点数据：原始数据和时间列表都已经按 comparator 升序排列时使用
+     *
+     * @param comparator 时间的比较器
+     * @see #fillMissingTimePointsSorted(List, List, Function, Function, BinaryOperator)
+     */
+    public static <T, K> List<T> fillMissingTimePointsSorted(List<T> sortedRawData,
+                                                             List<K> sortedTimeline,
+                                                             Function<T, K> timeExtractor,
+                                                             Function<K, T> defaultValueGenerator,
+                                                             BinaryOperator<T> mergeFunction,
+                                                             Comparator<? super K> comparator) {
+        Objects.requireNonNull(sortedRawData);
+        Objects.requireNonNull(sortedTimeline);
+        List<T> result = new ArrayList<>(sortedTimeline.size());
+        fillMissingTimePointsIterator(sortedRawData.iterator(), sortedTimeline.iterator(), timeExtractor,
+                defaultValueGenerator, mergeFunction, comparator)
+                .forEachRemaining(result::add);
+        return result;
+    }
+
+    /**
+     * 惰性填充缺失时间点数据：返回的 Stream 在消费时才会读取原始数据和时间列表、生成默认值
+     * <pre>
+     *     适合时间线很长、结果只需要流式输出（比如直接序列化）的场景，不需要把结果全部放在内存中
+     *     原始数据和时间列表都必须按时间升序排列
+     * </pre>
+     *
+     * @param sortedRawData  原始数据，按时间升序排列
+     * @param sortedTimeline 时间列表，按时间升序排列
+     * @see #fillMissingTimePointsIterator(Iterator, Iterator, Function, Function, BinaryOperator, Comparator)
+     */
+    public static <T, K> Stream<T> fillMissingTimePointsStream(Iterable<T> sortedRawData,
+                                                               Iterable<K> sortedTimeline,
+                                                               Function<T, K> timeExtractor,
+                                                               Function<K, T> defaultValueGenerator,
+                                                               BinaryOperator<T> mergeFunction,
+                                                               Comparator<? super K> comparator) {
+        Objects.requireNonNull(sortedRawData);
+        Objects.requireNonNull(sortedTimeline);
+        Iterator<T> iterator = fillMissingTimePointsIterator(sortedRawData.iterator(), sortedTimeline.iterator(),
+                timeExtractor, defaultValueGenerator, mergeFunction, comparator);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 惰性填充缺失时间点数据，每次调用 next 时才会读取下一个时间点
+     *
+     * @param sortedRawData         原始数据，按时间升序排列，可以是数据库游标等只能遍历一次的数据
+     * @param sortedTimeline        时间列表，按时间升序排列
+     * @param timeExtractor         原始数据的时间提取函数
+     * @param defaultValueGenerator 填充数据的函数，当数据为空的时候会调用此函数返回一个默认值的对象
+     * @param mergeFunction         原始数据中有相同时间点的数据时的合并函数，为 null 时遇到相同时间点会抛出 IllegalStateException
+     * @param comparator            时间的比较器
+     * @param <T>                   原始数据类型
+     * @param <K>                   时间类型
+     * @return
+     */
+    public static <T, K> Iterator<T> fillMissingTimePointsIterator(Iterator<T> sortedRawData,
+                                                                   Iterator<K> sortedTimeline,
+                                                                   Function<T, K> timeExtractor,
+                                                                   Function<K, T> defaultValueGenerator,
+                                                                   BinaryOperator<T> mergeFunction,
+                                                                   Comparator<? super K> comparator) {
+        Objects.requireNonNull(sortedRawData);
+        Objects.requireNonNull(sortedTimeline);
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        Objects.requireNonNull(comparator);
+        return new MergeJoinIterator<>(sortedRawData, sortedTimeline, timeExtractor, defaultValueGenerator, mergeFunction, comparator);
+    }
+
+    /**
+     * 填充缺失时间点数据：按 [start, end] 和 step 生成时间线，不需要调用方构建 fullTimeline 列表
+     * <pre>
+     *     时间线按本地时间（墙上时间）生成：start、start + step、start + 2 * step ... 直到不超过 end 的最后一个时间点（包含 end）
+     *     每个时间点代表 [时间点, 下一个时间点) 的桶，原始数据按本地时间所在的桶对齐（向下取整），不需要正好落在时间点上
+     *     夏令时切换时：
+     *       1. 按天、按月的时间线始终在同一个本地时刻，比如每天 00:00，不会因为某一天只有 23 小时变成 01:00
+     *       2. 夏令时开始时跳过的本地时间（比如 America/New_York 的 2024-03-10T02:00）不存在，不会出现在时间线中，
+     *          它的桶合并到前一个时间点
+     *       3. 夏令时结束时重复的本地时间（比如 01:30 出现两次）属于同一个桶，会使用 mergeFunction 合并
+     *     需要按真实经过的时间等间隔划分时，使用 Instant 或者毫秒时间戳的方法
+     *     时间线不会生成列表：原始数据所在的桶和缺失的时间点都是按下标计算出来的，
+     *     Duration 直接相除，Period 先按平均长度估算再修正，夏令时跳过的时间点只记录它们的下标
+     * </pre>
+     *
+     * @param rawData               原始数据，不要求有序，不在时间线范围内的数据会被忽略
+     * @param start                 开始时间（包含）
+     * @param end                   结束时间（包含）
+     * @param step                  时间间隔，只支持 Duration 和 Period，比如 Duration.ofMinutes(1)、Period.ofMonths(1)；
+     *                              第 n 个时间点为 start + n * step，按月时不会出现 1 月 31 日 -> 2 月 29 日 -> 3 月 29 日 的偏移
+     * @param zone                  时区，用于判断本地时间是否存在
+     * @param timeExtractor         原始数据的时间提取函数
+     * @param defaultValueGenerator 填充数据的函数，只有缺失的时间点才会调用
+     * @param mergeFunction         落在同一个桶中的数据的合并函数，为 null 时遇到同一个桶中的多条数据会抛出 IllegalStateException
+     * @param <T>                   原始数据类型
+     * @return
+     */
+    public static <T> List<T> fillMissingTimePoints(List<T> rawData,
+                                                    LocalDateTime start,
+                                                    LocalDateTime end,
+                                                    TemporalAmount step,
+                                                    ZoneId zone,
+                                                    Function<T, LocalDateTime> timeExtractor,
+                                                    Function<LocalDateTime, T> defaultValueGenerator,
+                                                    BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(rawData);
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(end);
+        Objects.requireNonNull(step);
+        Objects.requireNonNull(zone);
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("end 不能早于 start");
+        }
+        LocalTimeline timeline = new LocalTimeline(start, end, step, zone);
+        return fillSlots(rawData, timeline.size(),
+                item -> timeline.slotOf(timeExtractor.apply(item)),
+                i -> defaultValueGenerator.apply(timeline.pointAt(i)),
+                mergeFunction,
+                timeline::pointAt);
+    }
+
+    /**
+     * 填充缺失时间点数据：按 [start, end] 和 step 生成时间线
+     *
+     * @see #fillMissingTimePoints(List, LocalDateTime, LocalDateTime, TemporalAmount, ZoneId, Function, Function, BinaryOperator)
+     */
+    public static <T> List<T> fillMissingTimePoints(List<T> rawData,
+                                                    Instant start,
+                                                    Instant end,
+                                                    Duration step,
+                                                    Function<T, Instant> timeExtractor,
+                                                    Function<Instant, T> defaultValueGenerator,
+                                                    BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        return fillMissingTimePoints(rawData,
+                start.toEpochMilli(),
+                end.toEpochMilli(),
+                step.toMillis(),
+                item -> timeExtractor.apply(item).toEpochMilli(),
+                time -> defaultValueGenerator.apply(Instant.ofEpochMilli(time)),
+                mergeFunction);
+    }
+
+    /**
+     * 填充缺失时间点数据：按 [startMillis, endMillis] 和 stepMillis 生成时间线，时间都是毫秒时间戳
+     * <pre>
+     *     实现方式：按时间线长度分配一个槽位数组，原始数据按 (时间 - startMillis) / stepMillis 直接定位到槽位，
+     *     然后按下标顺序输出，空的槽位调用 defaultValueGenerator，整个过程不需要 Map，也不会创建时间对象
+     * </pre>
+     *
+     * @see #fillMissingTimePoints(List, LocalDateTime, LocalDateTime, TemporalAmount, ZoneId, Function, Function, BinaryOperator)
+     */
+    public static <T> List<T> fillMissingTimePoints(List<T> rawData,
+                                                    long startMillis,
+                                                    long endMillis,
+                                                    long stepMillis,
+                                                    ToLongFunction<T> timeExtractor,
+                                                    LongFunction<T> defaultValueGenerator,
+                                                    BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(rawData);
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        int points = timelineSize(startMillis, endMillis, stepMillis);
+        return fillSlots(rawData, points,
+                item -> slotOf(timeExtractor.applyAsLong(item), startMillis, stepMillis, points),
+                i -> defaultValueGenerator.apply(startMillis + i * stepMillis),
+                mergeFunction,
+                i -> startMillis + i * stepMillis);
+    }
+
+    /**
+     * 并行填充多个时间序列的缺失时间点，所有序列共用同一个时间线
+     * <pre>
+     *     适合按设备、按用户等维度同时画很多条趋势线的场景：
+     *     时间线到下标的索引只构建一次，各个序列之间使用 ForkJoinPool.commonPool() 并行填充
+     *     原始数据中不在时间线中的时间点会被忽略
+     * </pre>
+     *
+     * @param seriesMap             key 为序列标识（比如设备 ID），value 为该序列的原始数据，不要求有序
+     * @param fullTimeline          时间列表，会按此时间表填充数据
+     * @param timeExtractor         原始数据的时间提取函数
+     * @param defaultValueGenerator 填充数据的函数，参数为 序列标识、缺失的时间点
+     * @param mergeFunction         同一个序列中有相同时间点的数据时的合并函数，为 null 时遇到相同时间点会抛出 IllegalStateException
+     * @param <S>                   序列标识类型
+     * @param <T>                   原始数据类型
+     * @param <K>                   时间类型
+     * @return 按 seriesMap 的顺序返回每个序列填充后的数据
+     */
+    public static <S, T, K> Map<S, List<T>> fillMissingTimePointsParallel(Map<S, ? extends List<T>> seriesMap,
+                                                                          List<K> fullTimeline,
+                                                                          Function<T, K> timeExtractor,
+                                                                          BiFunction<S, K, T> defaultValueGenerator,
+                                                                          BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(seriesMap);
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        List<K> timeline = new ArrayList<>(fullTimeline);
+        int points = timeline.size();
+        Map<K, Integer> timelineIndex = HashMap.newHashMap(points);
+        for (int i = 0; i < points; i++) {
+            timelineIndex.putIfAbsent(timeline.get(i), i);
+        }
+        return fillParallel(seriesMap, (key, rawData) -> fillSlots(rawData, points,
+                item -> timelineIndex.getOrDefault(timeExtractor.apply(item), -1),
+                i -> defaultValueGenerator.apply(key, timeline.get(i)),
+                mergeFunction,
+                timeline::get));
+    }
+
+    /**
+     * 并行填充多个时间序列的缺失时间点，所有序列共用按 [startMillis, endMillis] 和 stepMillis 生成的时间线
+     * <pre>
+     *     原始数据按所在的桶对齐（向下取整），不需要正好落在时间点上
+     * </pre>
+     *
+     * @param defaultValueGenerator 填充数据的函数，参数为 序列标识、缺失的时间点（毫秒时间戳）
+     * @see #fillMissingTimePointsParallel(Map, List, Function, BiFunction, BinaryOperator)
+     * @see #fillMissingTimePoints(List, long, long, long, ToLongFunction, LongFunction, BinaryOperator)
+     */
+    public static <S, T> Map<S, List<T>> fillMissingTimePointsParallel(Map<S, ? extends List<T>> seriesMap,
+                                                                       long startMillis,
+                                                                       long endMillis,
+                                                                       long stepMillis,
+                                                                       ToLongFunction<T> timeExtractor,
+                                                                       SeriesDefaultValueGenerator<S, T> defaultValueGenerator,
+                                                                       BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(seriesMap);
+        Objects.requireNonNull(timeExtractor);
+        Objects.requireNonNull(defaultValueGenerator);
+        int points = timelineSize(startMillis, endMillis, stepMillis);
+        return fillParallel(seriesMap, (key, rawData) -> fillSlots(rawData, points,
+                item -> slotOf(timeExtractor.applyAsLong(item), startMillis, stepMillis, points),
+                i -> defaultValueGenerator.apply(key, startMillis + i * stepMillis),
+                mergeFunction,
+                i -> startMillis + i * stepMillis));
+    }
+
+    /**
+     * 按序列标识分组后并行填充缺失时间点，适合直接处理数据库查询出来的多个序列混在一起的数据
+     *
+     * @param rows               多个序列的原始数据
+     * @param seriesKeyExtractor 序列标识提取函数
+     * @see #fillMissingTimePointsParallel(Map, long, long, long, ToLongFunction, SeriesDefaultValueGenerator, BinaryOperator)
+     */
+    public static <S, T> Map<S, List<T>> groupAndFillMissingTimePoints(Collection<T> rows,
+                                                                       Function<T, S> seriesKeyExtractor,
+                                                                       long startMillis,
+                                                                       long endMillis,
+                                                                       long stepMillis,
+                                                                       ToLongFunction<T> timeExtractor,
+                                                                       SeriesDefaultValueGenerator<S, T> defaultValueGenerator,
+                                                                       BinaryOperator<T> mergeFunction) {
+        Objects.requireNonNull(rows);
+        Objects.requireNonNull(seriesKeyExtractor);
+        Map<S, List<T>> seriesMap = new LinkedHashMap<>();
+        for (T row : rows) {
+            if (row != null) {
+                seriesMap.computeIfAbsent(seriesKeyExtractor.apply(row), k -> new ArrayList<>()).add(row);
+            }
+        }
+        return fillMissingTimePointsParallel(seriesMap, startMillis, endMillis, stepMillis, timeExtractor,
+                defaultValueGenerator, mergeFunction);
+    }
+
+    /**
+     * 把原始数据放到时间线对应的槽位中，再按槽位顺序输出，空槽位使用默认值
+     *
+     * @param slotOf    原始数据所在的槽位，不在时间线中时返回 -1
+     * @param defaultAt 空槽位的默认值
+     * @param slotTime  槽位的时间，只用于重复数据的异常信息
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> fillSlots(Iterable<T> rawData,
+                                         int points,
+                                         ToIntFunction<T> slotOf,
+                                         IntFunction<T> defaultAt,
+                                         BinaryOperator<T> mergeFunction,
+                                         IntFunction<?> slotTime) {
+        Object[] slots = new Object[points];
+        for (T item : rawData) {
+            if (item == null) {
+                continue;
+            }
+            int i = slotOf.applyAsInt(item);
+            if (i < 0) {
+                continue;
+            }
+            T exists = (T) slots[i];
+            slots[i] = exists == null ? item : merge(mergeFunction, slotTime.apply(i), exists, item);
+        }
+
+        List<T> result = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            T item = (T) slots[i];
+            result.add(item != null ? item : defaultAt.apply(i));
+        }
+        return result;
+    }
+
+    private static int slotOf(long time, long startMillis, long stepMillis, int points) {
+        if (time < startMillis) {
+            return -1;
+        }
+        long index = (time - startMillis) / stepMillis;
+        return index < points ? (int) index : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T> Map<S, List<T>> fillParallel(Map<S, ? extends List<T>> seriesMap,
+                                                       BiFunction<S, List<T>, List<T>> filler) {
+        Object[] keys = seriesMap.keySet().toArray();
+        Object[] inputs = seriesMap.values().toArray();
+        Object[] outputs = new Object[keys.length];
+        ForkJoinPool.commonPool().invoke(new FillTask<>(keys, inputs, outputs, 0, keys.length, filler));
+
+        Map<S, List<T>> result = LinkedHashMap.newLinkedHashMap(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            result.put((S) keys[i], (List<T>) outputs[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 计算 [startMillis, endMillis] 按 stepMillis 划分的时间点数量（包含 endMillis）
+     *
+     * @return
+     */
+    static int timelineSize(long startMillis, long endMillis, long stepMillis) {
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("step 必须大于 0 毫秒");
+        }
+        if (endMillis < startMillis) {
+            throw new IllegalArgumentException("end 不能早于 start");
+        }
+        long points = (endMillis - startMillis) / stepMillis + 1;
+        if (points > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("时间点数量太多：" + points);
+        }
+        return (int) points;
+    }
+
+    private static <T, K> T merge(BinaryOperator<T> mergeFunction, K time, T exists, T item) {
+        if (mergeFunction == null) {
+            throw new IllegalStateException("Duplicate key %s (attempted merging values %s and %s)".formatted(time, exists, item));
+        }
+        return mergeFunction.apply(exists, item);
+    }
+
+    /**
+     * 多序列填充时的默认值生成函数
+     *
+     * @param <S> 序列标识类型
+     * @param <T> 数据类型
+     */
+    @FunctionalInterface
+    public interface SeriesDefaultValueGenerator<S, T> {
+        /**
+         * @param seriesKey 序列标识
+         * @param time      缺失的时间点，毫秒时间戳
+         * @return
+         */
+        T apply(S seriesKey, long time);
+    }
+
+    /**
+     * 按本地时间生成的时间线，时间点和桶都是按下标计算出来的，不保存时间线列表
+     * <pre>
+     *  原始下标：不考虑夏令时，第 n 个时间点为 start + n * step
+     *  时间线下标：去掉夏令时开始时跳过的时间点后的下标，跳过的时间点只保存原始下标，一年最多几个到几十个
+     * </pre>
+     */
+    private static class LocalTimeline {
+        /**
+         * 一个月的平均秒数（365.2425 / 12 天），只用于估算 Period 的下标，估算后会再修正
+         */
+        private static final long AVG_MONTH_SECONDS = 2_629_746;
+        private static final long DAY_SECONDS = 86_400;
+        private final LocalDateTime start;
+        private final Duration duration;
+        private final Period period;
+        /**
+         * 不超过 end 的原始时间点数量
+         */
+        private final int rawPoints;
+        /**
+         * 最后一个桶的结束时间（不包含）
+         */
+        private final LocalDateTime lastBucketEnd;
+        /**
+         * 跳过的时间点的原始下标，升序
+         */
+        private final int[] skipped;
+        /**
+         * skipped[j] - j，即跳过的时间点插入在哪个时间线下标之前，用于从时间线下标换算原始下标
+         */
+        private final int[] skippedBefore;
+
+        private LocalTimeline(LocalDateTime start, LocalDateTime end, TemporalAmount step, ZoneId zone) {
+            this.start = start;
+            if (step instanceof Duration d) {
+                if (d.isZero() || d.isNegative()) {
+                    throw new IllegalArgumentException("step 必须大于 0");
+                }
+                this.duration = d;
+                this.period = null;
+            } else if (step instanceof Period p) {
+                if (p.isZero() || p.isNegative()) {
+                    throw new IllegalArgumentException("step 必须大于 0");
+                }
+                this.duration = null;
+                this.period = p;
+            } else {
+                throw new IllegalArgumentException("step 只支持 Duration 和 Period：" + step);
+            }
+            long points = floorIndex(end) + 1;
+            if (points > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("时间点数量太多：" + points);
+            }
+            this.rawPoints = (int) points;
+            this.lastBucketEnd = rawPoint(rawPoints);
+            this.skipped = skippedIndexes(zone);
+            this.skippedBefore = new int[skipped.length];
+            for (int j = 0; j < skipped.length; j++) {
+                skippedBefore[j] = skipped[j] - j;
+            }
+        }
+
+        private int size() {
+            return rawPoints - skipped.length;
+        }
+
+        /**
+         * 时间线上第 i 个时间点
+         */
+        private LocalDateTime pointAt(int i) {
+            return rawPoint(i + countAtMost(skippedBefore, i));
+        }
+
+        /**
+         * 时间所在的桶的时间线下标；在跳过的时间点的桶中时，属于前一个时间点
+         *
+         * @return 不在时间线范围内时返回 -1
+         */
+        private int slotOf(LocalDateTime time) {
+            if (time == null || time.isBefore(start) || !time.isBefore(lastBucketEnd)) {
+                return -1;
+            }
+            int raw = (int) floorIndex(time);
+            return raw - countAtMost(skipped, raw);
+        }
+
+        private LocalDateTime rawPoint(long n) {
+            return duration != null ? start.plus(duration.multipliedBy(n)) : start.plus(period.multipliedBy(Math.toIntExact(n)));
+        }
+
+        /**
+         * 最后一个不晚于 time 的原始时间点下标，time 不能早于 start
+         */
+        private long floorIndex(LocalDateTime time) {
+            if (duration != null) {
+                return Duration.between(start, time).dividedBy(duration);
+            }
+            // 月份长度不固定，先按平均长度估算，再前后修正，误差只有几个时间点
+            long approxSeconds = period.toTotalMonths() * AVG_MONTH_SECONDS + period.getDays() * DAY_SECONDS;
+            long n = Duration.between(start, time).getSeconds() / approxSeconds;
+            if (n > Integer.MAX_VALUE - 8) {
+                return n;
+            }
+            while (n > 0 && rawPoint(n).isAfter(time)) {
+                n--;
+            }
+            while (!rawPoint(n + 1).isAfter(time)) {
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * 遍历时间线范围内的时区切换，找出夏令时开始时跳过的本地时间上的时间点
+         */
+        private int[] skippedIndexes(ZoneId zone) {
+            ZoneRules rules = zone.getRules();
+            List<Integer> result = new ArrayList<>();
+            // 往前多找一天，start 本身可能就在跳过的时间中
+            LocalDateTime from = start.minusDays(1);
+            ZoneOffsetTransition transition = rules.nextTransition(from.toInstant(rules.getOffset(from)));
+            while (transition != null && transition.getDateTimeBefore().isBefore(lastBucketEnd)) {
+                if (transition.isGap()) {
+                    LocalDateTime gapStart = transition.getDateTimeBefore();
+                    LocalDateTime gapEnd = transition.getDateTimeAfter();
+                    int k = gapStart.isAfter(start) ? (int) floorIndex(gapStart) : 0;
+                    if (rawPoint(k).isBefore(gapStart)) {
+                        k++;
+                    }
+                    for (; k < rawPoints && rawPoint(k).isBefore(gapEnd); k++) {
+                        result.add(k);
+                    }
+                }
+                transition = rules.nextTransition(transition.getInstant());
+            }
+            return result.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * 升序数组中小于等于 value 的元素个数
+         */
+        private static int countAtMost(int[] sorted, int value) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * 按序列二分拆分的并行填充任务，每个序列的填充结果写入 outputs 的相同下标；只在 ForkJoinPool 中执行，不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private static class FillTask<S, T> extends RecursiveAction {
+        private final Object[] keys;
+        private final Object[] inputs;
+        private final Object[] outputs;
+        private final int from;
+        private final int to;
+        private final BiFunction<S, List<T>, List<T>> filler;
+
+        private FillTask(Object[] keys, Object[] inputs, Object[] outputs, int from, int to,
+                         BiFunction<S, List<T>, List<T>> filler) {
+            this.keys = keys;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.from = from;
+            this.to = to;
+            this.filler = filler;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (to - from == 1) {
+                List<T> rawData = (List<T>) inputs[from];
+                outputs[from] = filler.apply((S) keys[from], rawData == null ? List.of() : rawData);
+                return;
+            }
+            if (to - from < 1) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FillTask<>(keys, inputs, outputs, from, mid, filler),
+                    new FillTask<>(keys, inputs, outputs, mid, to, filler));
+        }
+    }
+
+    /**
+     * 归并原始数据和时间列表，两者都按时间升序排列
+     */
+    private static class MergeJoinIterator<T, K> implements Iterator<T> {
+        private final Iterator<T> rawData;
+        private final Iterator<K> timeline;
+        private final Function<T, K> timeExtractor;
+        private final Function<K, T> defaultValueGenerator;
+        private final BinaryOperator<T> mergeFunction;
+        private final Comparator<? super K> comparator;
+        /**
+         * 已经从原始数据中读出来，但还没有匹配的数据
+         */
+        private T pending;
+        private K pendingTime;
+
+        private MergeJoinIterator(Iterator<T> rawData, Iterator<K> timeline, Function<T, K> timeExtractor,
+                                  Function<K, T> defaultValueGenerator, BinaryOperator<T> mergeFunction,
+                                  Comparator<? super K> comparator) {
+            this.rawData = rawData;
+            this.timeline = timeline;
+            this.timeExtractor = timeExtractor;
+            this.defaultValueGenerator = defaultValueGenerator;
+            this.mergeFunction = mergeFunction;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return timeline.hasNext();
+        }
 
-        // 按时间序列顺序构建数据
-        return fullTimeline.stream()
-                .map(time -> dataMap.getOrDefault(time, defaultValueGenerator.apply(time)))
-                .collect(Collectors.toList());
+        @Override
+        public T next() {
+            if (!timeline.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K time = timeline.next();
+            T matched = null;
+            while (pending != null || rawData.hasNext()) {
+                if (pending == null) {
+                    pending = rawData.next();
+                    if (pending == null) {
+                        continue;
+                    }
+                    pendingTime = timeExtractor.apply(pending);
+                }
+                int c = comparator.compare(pendingTime, time);
+                if (c > 0) {
+                    // 属于后面的时间点
+                    break;
+                }
+                if (c == 0) {
+                    matched = matched == null ? pending : merge(mergeFunction, time, matched, pending);
+                }
+                // 小于当前时间点的数据不在时间列表中，直接忽略
+                pending = null;
+                pendingTime = null;
+            }
+            return matched != null ? matched : defaultValueGenerator.apply(time);
+        }
     }
 }
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -67,6 +68,10 @@ public class BatchProcessor<T> {
     // 批量插入时，每次最多插入多少条
     private int maxItemCount;
     private List<WorkThread> workThreads;
+    /**
+     * 监控指标监听器
+     */
+    private MetricsListener metrics = MetricsListener.NOOP;
 
 
     public BatchProcessor() {
@@ -97,6 +102,18 @@ public class BatchProcessor<T> {
         this.threadNamePrefix = threadNamePrefix;
     }
 
+    /**
+     * 配置监控指标监听器，处理器名称为线程名称前缀
+     *
+     * @param metrics 不能为 null，不需要时使用 {@link MetricsListener#NOOP}
+     */
+    public synchronized void setMetricsListener(MetricsListener metrics) {
+        if (started) {
+            throw new RuntimeException("已经开始处理，不能再设置监控指标监听器");
+        }
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
     /**
      * 每次只消费一条数据
      *
@@ -212,6 +229,9 @@ public class BatchProcessor<T> {
     public void put(T entity) {
         try {
             queue.put(entity);
+            if (metrics != MetricsListener.NOOP) {
+                metrics.onEnqueue(threadNamePrefix, queue.size());
+            }
         } catch (InterruptedException e) {
             ExceptionUtil.wrapAndThrow(e);
         }
@@ -288,30 +308,70 @@ public class BatchProcessor<T> {
         }
 
         private void doRun() throws InterruptedException {
-            // 如果不产生数据了，队列也会空，则退出线程
-            while (isProduceData || queue.size() != 0) {
-                final T entity;
-                entity = queue.poll(500, TimeUnit.MILLISECONDS);
-                if (entity == null) {
-                    continue;
-                }
-                if (maxItemCount > 0) {
-                    batchCacheContainer.add(entity);
-                    if (batchCacheContainer.size() >= maxItemCount) {
-                        consumer.accept(null, batchCacheContainer);
-                        batchCacheContainer.clear();
+            // 不统计指标时不需要获取时间
+            boolean metricsEnabled = metrics != MetricsListener.NOOP;
+            long idleStart = metricsEnabled ? System.nanoTime() : 0;
+            try {
+                // 如果不产生数据了，队列也会空，则退出线程
+                while (isProduceData || queue.size() != 0) {
+                    final T entity;
+                    entity = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (entity == null) {
+                        continue;
+                    }
+                    if (metricsEnabled) {
+                        long now = System.nanoTime();
+                        metrics.onIdle(threadNamePrefix, getName(), now - idleStart);
+                    }
+                    if (maxItemCount > 0) {
+                        batchCacheContainer.add(entity);
+                        if (batchCacheContainer.size() >= maxItemCount) {
+                            consumeBatch();
+                        }
+                    } else {
+                        long start = metricsEnabled ? System.nanoTime() : 0;
+                        boolean error = true;
+                        try {
+                            consumer.accept(entity, null);
+                            error = false;
+                        } finally {
+                            if (metricsEnabled) {
+                                metrics.onConsume(threadNamePrefix, 1, System.nanoTime() - start, error);
+                            }
+                        }
                     }
-                } else {
-                    consumer.accept(entity, null);
+                    if (metricsEnabled) {
+                        idleStart = System.nanoTime();
+                    }
+                }
+            } finally {
+                if (metricsEnabled) {
+                    metrics.onIdle(threadNamePrefix, getName(), System.nanoTime() - idleStart);
                 }
             }
         }
 
         public void clearEntity() {
             if (maxItemCount > 0 && batchCacheContainer.size() > 0) {
+                consumeBatch();
+            }
+        }
+
+        private void consumeBatch() {
+            if (metrics == MetricsListener.NOOP) {
                 consumer.accept(null, batchCacheContainer);
-                batchCacheContainer.clear();
+            } else {
+                int size = batchCacheContainer.size();
+                long start = System.nanoTime();
+                boolean error = true;
+                try {
+                    consumer.accept(null, batchCacheContainer);
+                    error = false;
+                } finally {
+                    metrics.onConsume(threadNamePrefix, size, System.nanoTime() - start, error);
+                }
             }
+            batchCacheContainer.clear();
         }
     }
 
@@ -0,0 +1,186 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内置的监控指标实现：使用无锁直方图统计，并可以定时通过 slf4j 输出报告
+ * <pre>
+ *  使用示例：
+ *     HistogramMetricsListener metrics = new HistogramMetricsListener();
+ *     // 每分钟输出一次报告，每次报告只统计这一分钟内的数据
+ *     metrics.startReport(1, TimeUnit.MINUTES);
+ *     batchProcessor.setMetricsListener(metrics);
+ *     dispatcher.setMetricsListener(metrics);
+ *  输出示例：
+ *     [Task-] enqueue=1200 queueSize(p50/p99/max)=3/80/100 consume=1200 batchSize(mean/max)=1.0/1
+ *       consumeMs(p50/p99/max)=12.5/80.0/150.2 consumeError=2 idleMs(total)=3500.0 idleMs(thread)=Task-1:1700.0,Task-2:1800.0
+ *       dedupHit=35 reject=0
+ *  消费耗时包含消费失败的批次，consumeError 是其中失败的批次数；
+ *  idleMs(thread) 是每个工作线程的空闲时间，可以看出负载是否均衡，清零时会移除本周期内没有空闲记录的线程（比如已经退出的线程）
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+@Slf4j
+public class HistogramMetricsListener implements MetricsListener {
+    private final Map<String, Stats> statsMap = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+
+    @Override
+    public void onEnqueue(String name, int queueSize) {
+        Stats stats = stats(name);
+        stats.enqueue.increment();
+        stats.queueSize.record(queueSize);
+    }
+
+    @Override
+    public void onConsume(String name, int batchSize, long costNanos) {
+        onConsume(name, batchSize, costNanos, false);
+    }
+
+    @Override
+    public void onConsume(String name, int batchSize, long costNanos, boolean error) {
+        Stats stats = stats(name);
+        stats.batchSize.record(batchSize);
+        stats.consumeNanos.record(costNanos);
+        if (error) {
+            stats.consumeError.increment();
+        }
+    }
+
+    @Override
+    public void onIdle(String name, String threadName, long idleNanos) {
+        Map<String, LongAdder> idleByThread = stats(name).idleNanos;
+        LongAdder adder = idleByThread.get(threadName);
+        if (adder == null) {
+            adder = idleByThread.computeIfAbsent(threadName, _name -> new LongAdder());
+        }
+        adder.add(idleNanos);
+    }
+
+    @Override
+    public void onDedupHit(String name) {
+        stats(name).dedupHit.increment();
+    }
+
+    @Override
+    public void onReject(String name) {
+        stats(name).reject.increment();
+    }
+
+    /**
+     * 获取当前的统计报告，按处理器名称排序，每个处理器一行
+     *
+     * @param reset 是否清零，清零后下一次报告只统计这之后的数据
+     * @return
+     */
+    public String report(boolean reset) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(statsMap).entrySet()) {
+            if (!sb.isEmpty()) {
+                sb.append('\n');
+            }
+            sb.append('[').append(entry.getKey()).append("] ").append(entry.getValue().report(reset));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 开始定时输出报告到日志（info 级别），每次输出后清零
+     *
+     * @param period 输出间隔
+     * @param unit   时间单位
+     */
+    public synchronized void startReport(long period, TimeUnit unit) {
+        if (reporter != null) {
+            throw new IllegalStateException("已经开始定时输出报告");
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HistogramMetricsListener-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            String report = report(true);
+            if (!report.isEmpty()) {
+                log.info("监控指标报告：\n{}", report);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * 停止定时输出报告
+     */
+    public synchronized void stopReport() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private Stats stats(String name) {
+        Stats stats = statsMap.get(name);
+        if (stats == null) {
+            stats = statsMap.computeIfAbsent(name, _name -> new Stats());
+        }
+        return stats;
+    }
+
+    private static class Stats {
+        private final LongAdder enqueue = new LongAdder();
+        private final LongHistogram queueSize = new LongHistogram();
+        private final LongHistogram batchSize = new LongHistogram();
+        private final LongHistogram consumeNanos = new LongHistogram();
+        private final LongAdder consumeError = new LongAdder();
+        /**
+         * 工作线程名称 -> 空闲时间
+         */
+        private final Map<String, LongAdder> idleNanos = new ConcurrentHashMap<>();
+        private final LongAdder dedupHit = new LongAdder();
+        private final LongAdder reject = new LongAdder();
+
+        private String report(boolean reset) {
+            LongHistogram.Snapshot queue = reset ? queueSize.snapshotAndReset() : queueSize.snapshot();
+            LongHistogram.Snapshot batch = reset ? batchSize.snapshotAndReset() : batchSize.snapshot();
+            LongHistogram.Snapshot consume = reset ? consumeNanos.snapshotAndReset() : consumeNanos.snapshot();
+            long idleTotal = 0;
+            StringBuilder idleByThread = new StringBuilder();
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(idleNanos).entrySet()) {
+                long idle = reset ? entry.getValue().sumThenReset() : entry.getValue().sum();
+                if (reset && idle == 0) {
+                    // 本周期内没有空闲记录，线程可能已经退出了
+                    idleNanos.remove(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                idleTotal += idle;
+                if (!idleByThread.isEmpty()) {
+                    idleByThread.append(',');
+                }
+                idleByThread.append(entry.getKey()).append(':').append("%.1f".formatted(millis(idle)));
+            }
+            return "enqueue=%d queueSize(p50/p99/max)=%d/%d/%d consume=%d batchSize(mean/max)=%.1f/%d consumeMs(p50/p99/max)=%.1f/%.1f/%.1f consumeError=%d idleMs(total)=%.1f idleMs(thread)=%s dedupHit=%d reject=%d"
+                    .formatted(reset ? enqueue.sumThenReset() : enqueue.sum(),
+                            queue.percentile(0.5), queue.percentile(0.99), queue.getMax(),
+                            batch.getSum(), batch.getMean(), batch.getMax(),
+                            millis(consume.percentile(0.5)), millis(consume.percentile(0.99)), millis(consume.getMax()),
+                            reset ? consumeError.sumThenReset() : consumeError.sum(),
+                            millis(idleTotal), idleByThread,
+                            reset ? dedupHit.sumThenReset() : dedupHit.sum(),
+                            reset ? reject.sumThenReset() : reject.sum());
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的 long 值直方图，用于统计耗时、数量等指标的分布
+ * <pre>
+ *  使用对数 + 线性的分桶方式：每个 2 的幂区间再平分为 16 个桶，相对误差不超过 1/16（约 6%）
+ *  记录只需要一次原子自增，没有锁，可以在多个线程中同时记录
+ *  使用示例：
+ *     LongHistogram histogram = new LongHistogram();
+ *     histogram.record(costNanos);
+ *     LongHistogram.Snapshot snapshot = histogram.snapshot();
+ *     snapshot.percentile(0.99);
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class LongHistogram {
+    /**
+     * 每个 2 的幂区间再分为 2^SUB_BITS 个桶
+     */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (63 - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一个值，小于 0 的值按 0 记录
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 获取当前的统计快照
+     *
+     * @return
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, sum.sum(), max.get());
+    }
+
+    /**
+     * 获取统计快照并清零，用于按周期统计；清零和并发记录之间不是原子的，个别数据可能被算到下一个周期
+     *
+     * @return
+     */
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.getAndSet(i, 0);
+        }
+        return new Snapshot(counts, sum.sumThenReset(), max.getThenReset());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        // 取最高位后面的 SUB_BITS 位作为区间内的桶编号
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = SUB_COUNT + index % SUB_COUNT;
+        return mantissa << shift;
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * 获取百分位数，返回所在桶的中间值，不会超过最大值
+         *
+         * @param quantile 0 ~ 1 之间，比如 0.99
+         * @return
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(1, Math.max(0, quantile)) * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1)) {
+                    long lower = bucketLowerBound(i);
+                    long upper = bucketLowerBound(i + 1);
+                    if (upper <= lower) {
+                        // 最后一个桶的上界溢出了
+                        upper = Long.MAX_VALUE;
+                    }
+                    return Math.min(max, lower + (upper - lower) / 2);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+/**
+ * 多线程处理工具的监控指标监听器
+ * <pre>
+ *  BatchProcessor 和 SimpleTaskDispatcher 会在关键路径上回调该接口，用于观察：
+ *    队列深度、每批数据量、消费耗时和失败次数、每个工作线程的空闲时间、去重命中次数、拒绝次数
+ *  所有方法都是空的默认实现，只需要实现关心的方法；默认使用 {@link #NOOP}，不设置时几乎没有额外开销
+ *  注意：回调发生在生产方和工作线程中，实现类不能有耗时操作，并且必须是线程安全的
+ *  内置实现：{@link HistogramMetricsListener} 无锁直方图统计，并可以定时通过 slf4j 输出报告
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public interface MetricsListener {
+    /**
+     * 空实现，不统计任何指标
+     */
+    MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * 数据进入队列
+     *
+     * @param name      处理器名称（线程名称前缀）
+     * @param queueSize 进入队列后的队列深度
+     */
+    default void onEnqueue(String name, int queueSize) {
+    }
+
+    /**
+     * 消费完一批数据
+     *
+     * @param name      处理器名称（线程名称前缀）
+     * @param batchSize 本批数据量，单条消费时为 1
+     * @param costNanos 消费耗时，纳秒
+     */
+    default void onConsume(String name, int batchSize, long costNanos) {
+    }
+
+    /**
+     * 消费完一批数据，包括消费失败（抛出异常）的情况；默认实现只在成功时转发给 {@link #onConsume(String, int, long)}
+     *
+     * @param name      处理器名称（线程名称前缀）
+     * @param batchSize 本批数据量，单条消费时为 1
+     * @param costNanos 消费耗时，纳秒
+     * @param error     是否消费失败
+     */
+    default void onConsume(String name, int batchSize, long costNanos, boolean error) {
+        if (!error) {
+            onConsume(name, batchSize, costNanos);
+        }
+    }
+
+    /**
+     * 工作线程等待数据的空闲时间，在等到数据或者线程退出时回调
+     *
+     * @param name       处理器名称（线程名称前缀）
+     * @param threadName 工作线程名称
+     * @param idleNanos  空闲时间，纳秒
+     */
+    default void onIdle(String name, String threadName, long idleNanos) {
+    }
+
+    /**
+     * 添加的任务已经在排队或处理中，被去重了（SimpleTaskDispatcher）
+     *
+     * @param name 处理器名称（线程名称前缀）
+     */
+    default void onDedupHit(String name) {
+    }
+
+    /**
+     * 添加的任务因为队列已满或者已经关闭被拒绝了（SimpleTaskDispatcher）
+     *
+     * @param name 处理器名称（线程名称前缀）
+     */
+    default void onReject(String name) {
+    }
+}
@@ -1,17 +1,26 @@
 package cn.mrcode.tool.mytoolbox.thread;
 
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 
-
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
 /**
  * 简单任务分发器
@@ -20,6 +29,7 @@ import java.util.stream.IntStream;
  *  本工具可以帮你处理：
  *    1. 多线程调度、每一条数据，分发一个线程处理
  *    2. 每一条数据在处理的时候，不会被重复添加处理
+ *       如果在处理中被再次添加，说明处理期间数据可能又有修改，会在本次处理完成后再处理一次（多次添加也只会再处理一次）
  *
  *  使用场景：定时任务触发处理数据 + 手动触发，比如下面这样
  *   - 有一个定时任务，需要定时扫表处理一些数据，同时还会有手动触发（有时候定时任务太慢，或者只需出错了，需要手动触发）
@@ -32,20 +42,87 @@ import java.util.stream.IntStream;
  * @date 2024/5/10 19:52
  * @since 0.1.0
  */
+@Slf4j
 public class SimpleTaskDispatcher<I> {
     /**
      * 当前已经在处理的任务 ID 有哪些，防止重复处理
      */
-    private final Set<I> tasks = Collections.synchronizedSet(new HashSet<>());
+    private final Set<I> tasks = ConcurrentHashMap.newKeySet();
     /**
      * 用于 worker 线程消费
      */
     private final ArrayBlockingQueue<I> taskQueue;
     /**
-     * 标记所有 worker 是否应该停止运行
+     * 任务队列的空位，先获取到空位才能放入任务队列，worker 取出任务后释放
+     * <pre>
+     *  这样添加任务时阻塞等待的是空位，而不是持有锁等待 taskQueue.put，等待期间不会影响其他线程添加任务
+     * </pre>
+     */
+    private final Semaphore slots;
+    /**
+     * 溢出队列，配合 {@link OverflowPolicy#SPILL} 使用
+     */
+    private final ConcurrentLinkedDeque<I> spillQueue = new ConcurrentLinkedDeque<>();
+    /**
+     * 队列已满时的溢出策略
+     */
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+    /**
+     * {@link OverflowPolicy#DISCARD_OLDEST} 丢弃排队中的任务时的回调
+     */
+    private volatile Consumer<I> discardCallback = _id -> {
+    };
+    /**
+     * 监控指标监听器
+     */
+    private volatile MetricsListener metrics = MetricsListener.NOOP;
+    /**
+     * worker 从队列中获取任务的等待时间，超时后会检查一次运行状态
+     */
+    private static final long POLL_INTERVAL_MILLIS = 200;
+    /**
+     * 不统计指标时的空闲开始时间
+     */
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final int TERMINATED = 3;
+    /**
+     * 运行状态：RUNNING -> SHUTDOWN（不再接收新任务，处理完已排队的任务） -> STOP（不再处理已排队的任务） -> TERMINATED
+     */
+    private volatile int runState = RUNNING;
+    /**
+     * 用于状态变更和等待终止
+     */
+    private final ReentrantLock mainLock = new ReentrantLock();
+    private final Condition termination = mainLock.newCondition();
+    /**
+     * 还在工作的 worker 数量，包括 CALLER_RUNS 时正在处理任务的调用方线程，被看门狗放弃的 worker 不计算在内，由 mainLock 保护
+     */
+    private int workerCount;
+    /**
+     * 下一个 worker 线程的编号，由 mainLock 保护
+     */
+    private int nextWorkerIndex;
+    private final List<WorkThread> workThreads = new CopyOnWriteArrayList<>();
+    /**
+     * 正在处理的任务，看门狗会检查是否超时
+     */
+    private final ConcurrentHashMap<I, RunningTask> runningTasks = new ConcurrentHashMap<>();
+    /**
+     * 单个任务的处理超时时间，0 表示不限制
+     */
+    private volatile long taskTimeoutNanos;
+    /**
+     * 任务超时被放弃时的回调
      */
-    private volatile boolean isStop = false;
-    private final Lock lock = new ReentrantLock();
+    private volatile Consumer<I> timeoutCallback = _id -> {
+    };
+    /**
+     * 看门狗线程，设置了超时时间才会启动，由 mainLock 保护
+     */
+    private Thread watchdog;
 
     /**
      * 处理任务的服务
@@ -53,9 +130,21 @@ public class SimpleTaskDispatcher<I> {
     private final HandlerService<I> handlerService;
 
     /**
-     * 需要启用几个线程处理任务，默认 1 个
+     * 需要启用几个线程处理任务，默认 1 个；虚拟线程模式下表示最多同时处理多少个任务
      */
     private final int workThreadNum;
+    /**
+     * 是否使用虚拟线程模式：每个任务使用一个虚拟线程处理
+     */
+    private final boolean virtualThread;
+    /**
+     * 虚拟线程模式下的并发限制，每个正在处理的任务占用一个许可
+     */
+    private final Semaphore concurrency;
+    /**
+     * 虚拟线程的编号
+     */
+    private final AtomicLong virtualThreadIndex = new AtomicLong();
     /**
      * 队列中最多存储多少数据
      */
@@ -64,6 +153,10 @@ public class SimpleTaskDispatcher<I> {
      * 线程名称前缀
      */
     private final String threadNamePrefix;
+    /**
+     * 本地任务日志，可以为 null
+     */
+    private final TaskJournal<I> journal;
 
     public SimpleTaskDispatcher(HandlerService<I> handlerService) {
         this("SimpleTaskHandler-", handlerService);
@@ -79,27 +172,85 @@ public class SimpleTaskDispatcher<I> {
      * @param threadNamePrefix worker 线程名前缀，比如 Task-, 实际线程名为 Task-1、Task-2
      */
     public SimpleTaskDispatcher(int workThreadNum, int maxQueueCnt, String threadNamePrefix, HandlerService<I> handlerService) {
+        this(workThreadNum, maxQueueCnt, threadNamePrefix, handlerService, null);
+    }
+
+    /**
+     * @param workThreadNum    线程数量
+     * @param maxQueueCnt      允许数据队列的最大数量
+     * @param threadNamePrefix worker 线程名前缀，比如 Task-, 实际线程名为 Task-1、Task-2
+     * @param journal          本地任务日志，可以为 null；不为 null 时，启动时会先把日志中未完成的 ID 恢复到队列中，
+     *                         超出队列容量的部分会放入溢出队列，等待队列有空位时再补充进去
+     */
+    public SimpleTaskDispatcher(int workThreadNum, int maxQueueCnt, String threadNamePrefix, HandlerService<I> handlerService,
+                                TaskJournal<I> journal) {
+        this(workThreadNum, maxQueueCnt, threadNamePrefix, false, handlerService, journal);
+    }
+
+    /**
+     * <pre>
+     *  虚拟线程模式：适合 handle 是 IO 密集型的场景，比如一次 HTTP 调用 + 一次数据库写入
+     *    由一个分发线程从队列中取出任务，每个任务启动一个虚拟线程处理，最多同时处理 workThreadNum 个任务，
+     *    不需要再按照 线程数 / 耗时 去估算线程池大小，workThreadNum 可以设置到成百上千
+     *    同一个 ID 不会被重复添加处理的保证不变
+     *  注意：JDK 21 中虚拟线程在 synchronized 块中阻塞（IO、sleep、等待锁）时会占住载体线程（pinning），
+     *  handle 中需要阻塞的临界区尽量使用 ReentrantLock；只做内存操作的短小 synchronized 块影响不大，
+     *  分发器内部也只在这类不阻塞的地方使用 synchronized（使用 TaskJournal 且刷盘间隔为 0 时，刷盘在锁外进行，
+     *  但日志压缩会在 TaskJournal 的锁内写文件）
+     * </pre>
+     *
+     * @param workThreadNum    平台线程模式下是线程数量，虚拟线程模式下是最多同时处理的任务数量
+     * @param maxQueueCnt      允许数据队列的最大数量
+     * @param threadNamePrefix worker 线程名前缀，比如 Task-, 实际线程名为 Task-1、Task-2
+     * @param virtualThread    是否使用虚拟线程模式
+     * @param journal          本地任务日志，可以为 null
+     */
+    public SimpleTaskDispatcher(int workThreadNum, int maxQueueCnt, String threadNamePrefix, boolean virtualThread,
+                                HandlerService<I> handlerService, TaskJournal<I> journal) {
+        if (workThreadNum <= 0) {
+            throw new IllegalArgumentException("workThreadNum 必须大于 0");
+        }
         this.workThreadNum = workThreadNum;
+        this.virtualThread = virtualThread;
+        this.concurrency = virtualThread ? new Semaphore(workThreadNum) : null;
         this.maxQueueCnt = maxQueueCnt;
         this.threadNamePrefix = threadNamePrefix;
         this.handlerService = handlerService;
+        this.journal = journal;
         taskQueue = new ArrayBlockingQueue<>(maxQueueCnt);
-        workThreads = IntStream.range(0, workThreadNum).mapToObj(i -> {
-            WorkThread workThread = new WorkThread();
-            workThread.setName(threadNamePrefix + i);
-            workThread.start();
-            return workThread;
-        }).toList();
+        slots = new Semaphore(maxQueueCnt);
+        if (journal != null) {
+            for (I id : journal.recover()) {
+                tasks.add(id);
+                if (slots.tryAcquire()) {
+                    taskQueue.offer(id);
+                } else {
+                    spillQueue.offerLast(id);
+                }
+            }
+        }
+        mainLock.lock();
+        try {
+            // 虚拟线程模式下只需要一个分发线程
+            for (int i = 0, n = virtualThread ? 1 : workThreadNum; i < n; i++) {
+                startWorker();
+            }
+        } finally {
+            mainLock.unlock();
+        }
     }
 
-    private List<WorkThread> workThreads = null;
-
     public void addTask(I id) {
         this.addTask(id, _id -> {
         });
     }
 
     /**
+     * 添加任务，当队列已满时会阻塞，直到有空闲的位置
+     * <pre>
+     *  调用 shutdown 之后再添加任务，会抛出 RejectedExecutionException
+     * </pre>
+     *
      * @param id        用于处理数据的标识
      * @param addBefore 如果被调用，说明即将进入排队操作
      *                  使用场景：比如数数据状态有：0 无、1 队列中、2 处理中、3 处理完成
@@ -107,17 +258,409 @@ public class SimpleTaskDispatcher<I> {
      */
     @SneakyThrows
     public void addTask(I id, Consumer<I> addBefore) {
+        checkRunning();
+        if (reserve(id, addBefore) != null) {
+            return;
+        }
         try {
-            // 由于 tasks 和 taskQueue 不是原子操作，所以需要额外的锁
-            lock.lock();
-            if (tasks.contains(id)) {
-                return;
+            // 阻塞等待队列空位，此时不持有锁，不会影响其他 ID 的添加
+            slots.acquire();
+        } catch (InterruptedException e) {
+            tasks.remove(id);
+            throw e;
+        }
+        if (!enqueue(id, addBefore)) {
+            throw rejectedException();
+        }
+    }
+
+    public void addTasks(Collection<I> ids) {
+        this.addTasks(ids, _ids -> {
+        });
+    }
+
+    /**
+     * 批量添加任务
+     * <pre>
+     *  使用场景：定时任务一次扫表出成千上万个 ID，如果循环调用 addTask，每个 ID 都会回调一次 addBefore（一般就是一条 update 语句）
+     *  使用本方法时：
+     *    1. 会过滤掉已经在排队或处理中的 ID（以及 ids 中重复的 ID）
+     *    2. 只使用新加入的 ID 回调一次 addBefore，比如可以用一条 update ... where id in (...) 语句批量修改状态
+     *    3. 再将这些 ID 批量放入队列中，队列已满时会阻塞
+     *  注意：处理中的 ID 和 addTask 一样会被标记为处理完成后再处理一次，它们不在本批次的 addBefore 中，
+     *  而是在处理完成、再次排队前，由 worker 线程单独回调一次 addBefore(List.of(id))
+     * </pre>
+     *
+     * @param ids       用于处理数据的标识
+     * @param addBefore 如果被调用，说明参数中的 ID 即将进入排队操作；如果没有新加入的 ID，则不会被调用；
+     *                  处理中的 ID 再次排队前也会被调用，此时参数中只有这一个 ID，调用线程是 worker 线程
+     */
+    @SneakyThrows
+    public void addTasks(Collection<I> ids, Consumer<Collection<I>> addBefore) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        checkRunning();
+        List<I> admitted = new ArrayList<>(ids.size());
+        // 处理中的 ID 再次排队前，在 worker 线程中单独回调一次
+        Consumer<I> rerunBefore = id -> addBefore.accept(List.of(id));
+        for (I id : ids) {
+            // 已经在排队或处理中的会被过滤掉，同时也过滤掉了 ids 中重复的 ID
+            if (id != null && reserve(id, rerunBefore) == null) {
+                admitted.add(id);
+            }
+        }
+        if (admitted.isEmpty()) {
+            return;
+        }
+        try {
+            addBefore.accept(admitted);
+        } catch (Throwable e) {
+            // 回调失败，这批 ID 不会进入队列，需要释放掉
+            tasks.removeAll(admitted);
+            throw e;
+        }
+        for (int i = 0; i < admitted.size(); i++) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                // 还没有进入队列的 ID 需要释放掉
+                tasks.removeAll(admitted.subList(i, admitted.size()));
+                throw e;
+            }
+            if (runState != RUNNING) {
+                slots.release();
+                tasks.removeAll(admitted.subList(i, admitted.size()));
+                throw rejectedException();
+            }
+            journalAdmit(admitted.get(i));
+            taskQueue.offer(admitted.get(i));
+            recordEnqueue();
+            if (withdrawIfShutdown(admitted.get(i))) {
+                tasks.removeAll(admitted.subList(i + 1, admitted.size()));
+                throw rejectedException();
+            }
+        }
+    }
+
+    public AddResult tryAddTask(I id) {
+        return this.tryAddTask(id, _id -> {
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public AddResult tryAddTask(I id, long timeout, TimeUnit unit) {
+        return this.tryAddTask(id, _id -> {
+        }, timeout, unit);
+    }
+
+    /**
+     * 尝试添加任务，不会一直阻塞
+     * <pre>
+     *  使用场景：比如 HTTP 手动触发接口，队列满的时候不能一直阻塞请求线程
+     *  在 timeout 时间内队列仍然是满的，就会按照 {@link #setOverflowPolicy(OverflowPolicy)} 设置的溢出策略处理，默认是拒绝
+     *  注意：只有确定可以排队（或者由调用方线程执行）时，才会回调 addBefore，被拒绝时不会回调
+     * </pre>
+     *
+     * @param id        用于处理数据的标识
+     * @param addBefore 如果被调用，说明即将进入排队操作，参考 {@link #addTask(Object, Consumer)}
+     * @param timeout   等待队列空位的最长时间，小于等于 0 表示不等待
+     * @param unit      时间单位
+     * @return 添加结果
+     */
+    @SneakyThrows
+    public AddResult tryAddTask(I id, Consumer<I> addBefore, long timeout, TimeUnit unit) {
+        if (runState != RUNNING) {
+            return rejected();
+        }
+        AddResult reserved = reserve(id, addBefore);
+        if (reserved != null) {
+            return reserved;
+        }
+        OverflowPolicy policy = this.overflowPolicy;
+        boolean acquired;
+        try {
+            // 溢出队列中还有数据时，新数据也进入溢出队列，保证先来先处理
+            acquired = !(policy == OverflowPolicy.SPILL && !spillQueue.isEmpty())
+                    && slots.tryAcquire(timeout, unit);
+        } catch (InterruptedException e) {
+            tasks.remove(id);
+            throw e;
+        }
+        if (acquired) {
+            return enqueue(id, addBefore) ? AddResult.QUEUED : rejected();
+        }
+        switch (policy) {
+            case CALLER_RUNS -> {
+                if (!callerRunStarted()) {
+                    tasks.remove(id);
+                    return rejected();
+                }
+                try {
+                    try {
+                        addBefore.accept(id);
+                    } catch (Throwable e) {
+                        tasks.remove(id);
+                        throw e;
+                    }
+                    runInCaller(id);
+                } finally {
+                    callerRunExited();
+                }
+                return AddResult.CALLER_RUNS;
             }
+            case DISCARD_OLDEST -> {
+                // 丢弃队头（最早扫描到的）ID，腾出它占用的位置给当前 ID
+                while (true) {
+                    I oldest = taskQueue.poll();
+                    if (oldest != null) {
+                        journalComplete(oldest);
+                        tasks.remove(oldest);
+                        log.warn("队列已满，丢弃最早排队的任务：{}", oldest);
+                        discarded(oldest);
+                        return enqueue(id, addBefore) ? AddResult.QUEUED : rejected();
+                    }
+                    try {
+                        // 队列刚好被 worker 取空了，位置也就空出来了
+                        if (slots.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return enqueue(id, addBefore) ? AddResult.QUEUED : rejected();
+                        }
+                    } catch (InterruptedException e) {
+                        tasks.remove(id);
+                        throw e;
+                    }
+                    if (runState != RUNNING) {
+                        tasks.remove(id);
+                        return rejected();
+                    }
+                }
+            }
+            case SPILL -> {
+                try {
+                    addBefore.accept(id);
+                } catch (Throwable e) {
+                    tasks.remove(id);
+                    throw e;
+                }
+                journalAdmit(id);
+                spillQueue.offerLast(id);
+                recordEnqueue();
+                // 防止在放入溢出队列前，worker 已经把队列取空，导致溢出队列中的数据没人搬运
+                feedFromSpill();
+                return withdrawIfShutdown(id) ? rejected() : AddResult.QUEUED;
+            }
+            default -> {
+                tasks.remove(id);
+                return rejected();
+            }
+        }
+    }
+
+    /**
+     * 设置监控指标监听器，可以在运行中修改，处理器名称为线程名称前缀
+     *
+     * @param metrics 不能为 null，不需要时使用 {@link MetricsListener#NOOP}
+     */
+    public void setMetricsListener(MetricsListener metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * 设置 tryAddTask 等待超时后队列仍然满时的溢出策略，可以在运行中修改
+     *
+     * @param overflowPolicy 溢出策略，默认 {@link OverflowPolicy#REJECT}
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    /**
+     * 设置溢出策略，并设置 {@link OverflowPolicy#DISCARD_OLDEST} 丢弃任务时的回调
+     *
+     * @param overflowPolicy  溢出策略
+     * @param discardCallback 排队中的 ID 被丢弃时回调，在调用 tryAddTask 的线程中执行；
+     *                        被丢弃的 ID 已经回调过 addBefore（比如状态已经改为 队列中），需要在这里改回去，下一次扫表才能重新发现
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy, Consumer<I> discardCallback) {
+        this.discardCallback = Objects.requireNonNull(discardCallback);
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    private void discarded(I id) {
+        try {
+            discardCallback.accept(id);
+        } catch (Throwable e) {
+            log.error("任务丢弃回调异常，id={}", id, e);
+        }
+    }
+
+    /**
+     * 占用 ID，占用成功后才能放入队列
+     * <pre>
+     *  如果 ID 正在处理中，不会直接忽略，而是标记为需要再处理一次：
+     *  处理中的数据可能已经读过了，这期间的修改会被漏掉；所以不管处理期间添加了多少次，都会在处理完成后再处理且只再处理一次
+     *  如果 ID 还在排队，则直接忽略，因为它还没有开始处理，处理时能看到最新的修改
+     * </pre>
+     *
+     * @param rerunBefore 标记为再处理一次时，会在再次排队前回调
+     * @return null 表示占用成功；否则是不需要再排队的原因
+     */
+    private AddResult reserve(I id, Consumer<I> rerunBefore) {
+        while (true) {
+            // tasks.add 是原子操作，返回 false 说明已经在排队或处理中
+            if (tasks.add(id)) {
+                return null;
+            }
+            RunningTask task = runningTasks.get(id);
+            if (task == null) {
+                if (tasks.contains(id)) {
+                    metrics.onDedupHit(threadNamePrefix);
+                    return AddResult.ALREADY_PRESENT;
+                }
+                // 刚好处理完成被移除了，重新尝试占用
+                continue;
+            }
+            if (task.markRerun(rerunBefore)) {
+                metrics.onDedupHit(threadNamePrefix);
+                return AddResult.RERUN_SCHEDULED;
+            }
+            // 刚好处理完成且不会再处理，等它从 tasks 和 runningTasks 中移除后重新尝试；
+            // 这期间只会记录任务日志，不会调用外部的回调
+            task.awaitReleased();
+        }
+    }
+
+    /**
+     * 处理中被再次添加的 ID，处理完成后再次排队；在 worker 线程中调用，不能阻塞，队列已满时放入溢出队列
+     */
+    private void requeue(I id, Consumer<I> rerunBefore) {
+        try {
+            rerunBefore.accept(id);
+        } catch (Throwable e) {
+            log.error("任务再次排队前回调异常，放弃再次处理，id={}", id, e);
+            journalComplete(id);
+            tasks.remove(id);
+            return;
+        }
+        // 入队记录还在任务日志中，不需要再记录
+        if (slots.tryAcquire()) {
+            taskQueue.offer(id);
+            recordEnqueue();
+        } else {
+            spillQueue.offerLast(id);
+            feedFromSpill();
+        }
+    }
+
+    /**
+     * 已经获取到队列空位，回调 addBefore 后放入队列
+     *
+     * @return 分发器已经关闭时返回 false，此时会释放空位和 ID
+     */
+    private boolean enqueue(I id, Consumer<I> addBefore) {
+        // 等待空位期间可能已经被关闭了
+        if (runState != RUNNING) {
+            slots.release();
+            tasks.remove(id);
+            return false;
+        }
+        try {
             addBefore.accept(id);
-            tasks.add(id);
-            taskQueue.put(id);
-        } finally {
-            lock.unlock();
+        } catch (Throwable e) {
+            slots.release();
+            tasks.remove(id);
+            throw e;
+        }
+        journalAdmit(id);
+        // 已经持有空位，一定能放入成功
+        taskQueue.offer(id);
+        recordEnqueue();
+        return !withdrawIfShutdown(id);
+    }
+
+    /**
+     * 放入队列后再检查一次运行状态
+     * <pre>
+     *  检查运行状态和放入队列之间（比如 addBefore 回调期间）可能已经调用了 shutdown，
+     *  这时 worker 可能已经看到队列为空并退出了，放入的 ID 永远不会被处理，所以需要把它取回来
+     *  取回时先查溢出队列再查任务队列，因为 ID 只会从溢出队列搬运到任务队列
+     * </pre>
+     *
+     * @return 已经取回时返回 true，调用方需要按拒绝处理；没有取回说明已经被 worker 取走了，会被正常处理
+     */
+    private boolean withdrawIfShutdown(I id) {
+        if (runState == RUNNING) {
+            return false;
+        }
+        if (!withdraw(id)) {
+            return false;
+        }
+        journalComplete(id);
+        tasks.remove(id);
+        return true;
+    }
+
+    /**
+     * 从溢出队列或任务队列中取回 ID
+     *
+     * @return 已经被 worker 取走时返回 false
+     */
+    private boolean withdraw(I id) {
+        if (spillQueue.removeFirstOccurrence(id)) {
+            return true;
+        }
+        if (taskQueue.remove(id)) {
+            slots.release();
+            return true;
+        }
+        return false;
+    }
+
+    private void recordEnqueue() {
+        MetricsListener metrics = this.metrics;
+        if (metrics != MetricsListener.NOOP) {
+            metrics.onEnqueue(threadNamePrefix, taskQueue.size());
+        }
+    }
+
+    private AddResult rejected() {
+        metrics.onReject(threadNamePrefix);
+        return AddResult.REJECTED;
+    }
+
+    private RejectedExecutionException rejectedException() {
+        metrics.onReject(threadNamePrefix);
+        return new RejectedExecutionException("任务分发器已经关闭");
+    }
+
+    private void checkRunning() {
+        if (runState != RUNNING) {
+            throw rejectedException();
+        }
+    }
+
+    private void journalAdmit(I id) {
+        if (journal != null) {
+            journal.admit(id);
+        }
+    }
+
+    private void journalComplete(I id) {
+        if (journal != null) {
+            journal.complete(id);
+        }
+    }
+
+    /**
+     * 将溢出队列中的数据搬运到任务队列中，直到任务队列没有空位
+     */
+    private void feedFromSpill() {
+        while (!spillQueue.isEmpty() && slots.tryAcquire()) {
+            I id = spillQueue.pollFirst();
+            if (id == null) {
+                slots.release();
+                return;
+            }
+            taskQueue.offer(id);
         }
     }
 
@@ -134,7 +677,48 @@ public class SimpleTaskDispatcher<I> {
     }
 
     /**
-     * 标记所有 worker 线程停止处理任务
+     * 设置单个任务的处理超时时间（看门狗）
+     * <pre>
+     *  处理超时的任务会被放弃：中断处理线程、释放该任务的 ID（可以再次添加），并启动一个新的 worker 代替被放弃的 worker，
+     *  这样下游很慢或者 handle 卡住时，也不会一直占用 worker 和 ID
+     *  注意：被放弃的 handle 如果不响应中断，会继续执行直到结束，但它的结果不再影响分发器
+     * </pre>
+     *
+     * @param timeout 超时时间，小于等于 0 表示不限制
+     * @param unit    时间单位
+     */
+    public void setTaskTimeout(long timeout, TimeUnit unit) {
+        this.setTaskTimeout(timeout, unit, _id -> {
+        });
+    }
+
+    /**
+     * 设置单个任务的处理超时时间（看门狗）
+     *
+     * @param timeout         超时时间，小于等于 0 表示不限制
+     * @param unit            时间单位
+     * @param timeoutCallback 任务超时被放弃时回调，比如将数据状态从 处理中 改回 无，让下一次扫表可以重新发现
+     */
+    public void setTaskTimeout(long timeout, TimeUnit unit, Consumer<I> timeoutCallback) {
+        this.timeoutCallback = Objects.requireNonNull(timeoutCallback);
+        this.taskTimeoutNanos = timeout > 0 ? unit.toNanos(timeout) : 0;
+        if (taskTimeoutNanos == 0) {
+            return;
+        }
+        mainLock.lock();
+        try {
+            if (watchdog == null && runState != TERMINATED) {
+                watchdog = new Thread(this::watchdogLoop, threadNamePrefix + "watchdog");
+                watchdog.setDaemon(true);
+                watchdog.start();
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * 平滑关闭：不再接收新任务，已经排队（包括溢出队列）的任务会继续处理完，worker 随后退出；此方法不会阻塞
      * <pre>
      *  建议可以监听 spring 的 ContextClosedEvent 事件，如下所示
      *     {@code
@@ -143,34 +727,607 @@ public class SimpleTaskDispatcher<I> {
      *
      *          @EventListener
      *          public void ContextClosedEvent(ContextClosedEvent event) {
-     *              stop()
+     *              dispatcher.shutdown();
+     *              if (!dispatcher.awaitTermination(30, TimeUnit.SECONDS)) {
+     *                  dispatcher.shutdownNow();
+     *              }
      *          }
      *     }
      * </pre>
      */
+    public void shutdown() {
+        mainLock.lock();
+        try {
+            if (runState == RUNNING) {
+                runState = SHUTDOWN;
+            }
+            tryTerminate();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * 立即关闭：不再接收新任务，清空队列，并中断正在处理任务的 worker
+     * <pre>
+     *  使用了 TaskJournal 时，被清空的 ID 仍然保留在日志中，下次启动时会恢复
+     *  已经从队列中取出、但还没有开始处理的 ID（比如虚拟线程已经启动还没执行到 handle）不会再处理，
+     *  它们不在返回值中，同样保留在日志中
+     * </pre>
+     *
+     * @return 还没有开始处理的 ID
+     */
+    public List<I> shutdownNow() {
+        List<I> unstarted = new ArrayList<>();
+        mainLock.lock();
+        try {
+            if (runState < STOP) {
+                runState = STOP;
+            }
+            slots.release(taskQueue.drainTo(unstarted));
+            I id;
+            while ((id = spillQueue.pollFirst()) != null) {
+                unstarted.add(id);
+            }
+            tasks.removeAll(unstarted);
+            for (WorkThread workThread : workThreads) {
+                workThread.interrupt();
+            }
+            // 虚拟线程模式下正在处理任务的是虚拟线程
+            for (RunningTask task : runningTasks.values()) {
+                task.thread.interrupt();
+            }
+            tryTerminate();
+        } finally {
+            mainLock.unlock();
+        }
+        return unstarted;
+    }
+
+    /**
+     * 等待所有 worker 退出
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 在超时前已经终止返回 true
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        mainLock.lock();
+        try {
+            while (runState != TERMINATED) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = termination.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * 是否已经调用了 shutdown 或 shutdownNow
+     *
+     * @return
+     */
+    public boolean isShutdown() {
+        return runState >= SHUTDOWN;
+    }
+
+    /**
+     * 关闭后，所有 worker 是否都已经退出
+     *
+     * @return
+     */
+    public boolean isTerminated() {
+        return runState == TERMINATED;
+    }
+
+    /**
+     * 停止所有 worker 线程处理任务，等同于 {@link #shutdownNow()}；如果希望处理完已经排队的任务，请使用 {@link #shutdown()}
+     */
     public void stop() {
-        this.isStop = false;
+        this.shutdownNow();
+    }
+
+    /**
+     * 需要持有 mainLock
+     */
+    private void startWorker() {
+        WorkThread workThread = new WorkThread();
+        workThread.setName(threadNamePrefix + nextWorkerIndex++);
+        workThreads.add(workThread);
+        workerCount++;
+        workThread.start();
+    }
+
+    /**
+     * 需要持有 mainLock
+     */
+    private void tryTerminate() {
+        if (runState == RUNNING || runState == TERMINATED || workerCount > 0) {
+            return;
+        }
+        runState = TERMINATED;
+        if (journal != null) {
+            journal.flush();
+        }
+        if (watchdog != null) {
+            watchdog.interrupt();
+        }
+        termination.signalAll();
+    }
+
+    private void workerExited(WorkThread workThread) {
+        mainLock.lock();
+        try {
+            workThreads.remove(workThread);
+            workerCount--;
+            tryTerminate();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * 调用方线程开始处理任务，和 worker 一样计入 workerCount，处理完之前不会终止，任务日志也不会提前 flush
+     *
+     * @return 已经关闭时返回 false，不能再处理
+     */
+    private boolean callerRunStarted() {
+        mainLock.lock();
+        try {
+            if (runState != RUNNING) {
+                return false;
+            }
+            workerCount++;
+            return true;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    private void callerRunExited() {
+        mainLock.lock();
+        try {
+            workerCount--;
+            tryTerminate();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * 虚拟线程模式：启动一个虚拟线程处理任务，调用前已经获取了并发许可
+     */
+    private void startVirtualTask(I id) {
+        mainLock.lock();
+        try {
+            // 正在处理的虚拟线程也计入 workerCount，全部处理完才算终止
+            workerCount++;
+        } finally {
+            mainLock.unlock();
+        }
+        Thread.ofVirtual()
+                .name(threadNamePrefix + virtualThreadIndex.getAndIncrement())
+                .start(() -> {
+                    if (!runTask(id, Thread.currentThread())) {
+                        // 已经被看门狗放弃，许可和计数已经由看门狗释放
+                        return;
+                    }
+                    concurrency.release();
+                    mainLock.lock();
+                    try {
+                        workerCount--;
+                        tryTerminate();
+                    } finally {
+                        mainLock.unlock();
+                    }
+                });
+    }
+
+    /**
+     * CALLER_RUNS：调用方线程处理任务，调用方线程不受看门狗超时控制
+     * <pre>
+     *  处理期间被再次添加时，处理完成后会再次排队；如果这时已经调用了 shutdown，worker 可能已经看到队列为空并退出了，
+     *  所以把再次排队的 ID 取回来由调用方线程处理，没有取回说明已经被 worker 取走了
+     * </pre>
+     */
+    private void runInCaller(I id) {
+        do {
+            runTask(id, Thread.currentThread(), 0);
+        } while (runState == SHUTDOWN && withdraw(id));
+    }
+
+    /**
+     * 处理一个任务
+     *
+     * @return 当前线程被看门狗放弃时返回 false
+     */
+    private boolean runTask(I id, Thread thread) {
+        return runTask(id, thread, taskTimeoutNanos);
+    }
+
+    /**
+     * 处理一个任务
+     *
+     * @param timeoutNanos 超时时间，0 表示不受看门狗控制
+     * @return 当前线程被看门狗放弃时返回 false
+     */
+    private boolean runTask(I id, Thread thread, long timeoutNanos) {
+        RunningTask task = new RunningTask(id, thread, timeoutNanos);
+        runningTasks.put(id, task);
+        // 先登记再检查状态：shutdownNow 先修改状态再中断 runningTasks 中的线程，两者至少有一个能看到对方，
+        // 否则已经启动、还没登记的虚拟线程会在 STOP 之后完整地执行 handle
+        if (runState >= STOP) {
+            if (task.finish()) {
+                // 还没有开始处理，和 shutdownNow 清空的队列一样，ID 保留在任务日志中，下次启动时恢复
+                tasks.remove(id);
+                runningTasks.remove(id, task);
+                task.released();
+            }
+            return !task.isAbandoned();
+        }
+        MetricsListener metrics = this.metrics;
+        long start = metrics != MetricsListener.NOOP ? System.nanoTime() : 0;
+        boolean error = true;
+        try {
+            handlerService.handle(id);
+            error = false;
+        } catch (Throwable e) {
+            // 原本 handle 抛出异常会导致 worker 退出，这里记录日志后继续处理下一个任务
+            log.error("任务处理异常，id={}", id, e);
+        } finally {
+            if (metrics != MetricsListener.NOOP) {
+                metrics.onConsume(threadNamePrefix, 1, System.nanoTime() - start, error);
+            }
+            if (task.finish()) {
+                if (task.rerun && runState < STOP) {
+                    // 处理期间被再次添加过，ID 继续保留在 tasks 中，再排队一次
+                    requeue(id, task.rerunBefore);
+                } else {
+                    // 先记录完成，再移除；否则同一个 ID 在这中间被重新添加时，入队记录会被这里的完成记录覆盖
+                    completeOrKeep(task);
+                    tasks.remove(id);
+                }
+                // 最后才从 runningTasks 中移除，保证 reserve 不会把刚处理完、还没从 tasks 中移除的 ID 当成在排队
+                runningTasks.remove(id, task);
+                task.released();
+            }
+        }
+        return !task.isAbandoned();
+    }
+
+    /**
+     * 处理完成时记录到任务日志；已经 shutdownNow 时还需要再处理的 ID 不会再处理了，
+     * 和被清空的队列一样保留在日志中，下次启动时恢复
+     */
+    private void completeOrKeep(RunningTask task) {
+        if (!task.rerun) {
+            journalComplete(task.id);
+        }
+    }
+
+    private void watchdogLoop() {
+        while (runState != TERMINATED) {
+            long timeout = taskTimeoutNanos;
+            long interval = timeout > 0 ? Math.max(TimeUnit.MILLISECONDS.toNanos(10), Math.min(timeout / 4, TimeUnit.SECONDS.toNanos(1)))
+                    : TimeUnit.SECONDS.toNanos(1);
+            try {
+                TimeUnit.NANOSECONDS.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (RunningTask task : runningTasks.values()) {
+                if (task.isTimeout(now) && task.abandon()) {
+                    abandon(task);
+                }
+            }
+        }
+    }
+
+    /**
+     * 放弃超时的任务：中断处理线程、释放 ID，并启动新的 worker 代替
+     */
+    private void abandon(RunningTask task) {
+        log.warn("任务处理超时，放弃该任务，id={}，thread={}", task.id, task.thread.getName());
+        task.thread.interrupt();
+        try {
+            timeoutCallback.accept(task.id);
+        } catch (Throwable e) {
+            log.error("任务超时回调异常，id={}", task.id, e);
+        }
+        if (task.rerun && runState < STOP) {
+            requeue(task.id, task.rerunBefore);
+        } else {
+            completeOrKeep(task);
+            tasks.remove(task.id);
+        }
+        runningTasks.remove(task.id, task);
+        task.released();
+        mainLock.lock();
+        try {
+            if (virtualThread) {
+                // 虚拟线程不需要代替，释放它占用的许可即可
+                concurrency.release();
+                workerCount--;
+                tryTerminate();
+                return;
+            }
+            workThreads.remove(task.thread);
+            if (runState < STOP) {
+                // 被放弃的 worker 不再计数，由新的 worker 代替
+                workerCount--;
+                startWorker();
+            } else {
+                workerCount--;
+                tryTerminate();
+            }
+        } finally {
+            mainLock.unlock();
+        }
     }
 
     public class WorkThread extends Thread {
         @Override
         public void run() {
-            while (!isStop) {
-                I id = null;
+            try {
+                if (virtualThread) {
+                    dispatch();
+                } else if (!work()) {
+                    // 被放弃的 worker 已经不再计数，不需要再走退出流程
+                    return;
+                }
+            } catch (Throwable e) {
+                log.error("工作线程异常退出，threadName={}", getName(), e);
+            }
+            workerExited(this);
+        }
+
+        /**
+         * 平台线程模式：当前线程直接处理任务
+         *
+         * @return 被看门狗放弃时返回 false
+         */
+        private boolean work() {
+            long idleStart = idleStart();
+            while (true) {
+                int state = runState;
+                // 平滑关闭时，需要把队列和溢出队列中的任务都处理完
+                if (state >= STOP || (state == SHUTDOWN && taskQueue.isEmpty() && spillQueue.isEmpty())) {
+                    break;
+                }
+                I id;
                 try {
-                    id = taskQueue.take();
-                    handlerService.handle(id);
+                    id = taskQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
-                    isStop = true;
-                } finally {
-                    if (id != null) {
-                        tasks.remove(id);
+                    // shutdownNow 会中断 worker，回到开头检查状态
+                    continue;
+                }
+                if (id == null) {
+                    continue;
+                }
+                idleStart = recordIdle(idleStart);
+                // 释放队列空位，并把溢出队列中的数据补充进来
+                slots.release();
+                feedFromSpill();
+                if (!runTask(id, this)) {
+                    // 已经被看门狗放弃，并且有新的 worker 代替了
+                    return false;
+                }
+                idleStart = idleStart();
+            }
+            recordIdle(idleStart);
+            return true;
+        }
+
+        /**
+         * 虚拟线程模式：当前线程只负责分发，获取到并发许可后，每个任务启动一个虚拟线程处理
+         */
+        private void dispatch() {
+            long idleStart = idleStart();
+            while (true) {
+                int state = runState;
+                // 正在处理的虚拟线程处理完成后可能会再次排队，所以还要等它们处理完
+                if (state >= STOP || (state == SHUTDOWN && taskQueue.isEmpty() && spillQueue.isEmpty() && runningTasks.isEmpty())) {
+                    break;
+                }
+                I id;
+                try {
+                    // 先获取并发许可，达到并发上限时任务留在队列中
+                    if (!concurrency.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        continue;
                     }
+                } catch (InterruptedException e) {
+                    continue;
                 }
+                try {
+                    id = taskQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    id = null;
+                }
+                if (id == null) {
+                    concurrency.release();
+                    continue;
+                }
+                // 虚拟线程模式下统计的是分发线程等待任务和并发许可的时间
+                idleStart = recordIdle(idleStart);
+                slots.release();
+                feedFromSpill();
+                startVirtualTask(id);
             }
+            recordIdle(idleStart);
         }
     }
 
+    /**
+     * 工作线程空闲的开始时间，不统计指标时不需要获取时间
+     */
+    private long idleStart() {
+        return metrics != MetricsListener.NOOP ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * 记录工作线程的空闲时间
+     *
+     * @return 当前时间，作为下一次空闲的开始时间；不统计指标时返回 NOT_TIMED
+     */
+    private long recordIdle(long idleStart) {
+        MetricsListener metrics = this.metrics;
+        if (metrics == MetricsListener.NOOP) {
+            return NOT_TIMED;
+        }
+        long now = System.nanoTime();
+        // 运行中才设置的监听器，从下一次空闲开始统计
+        if (idleStart != NOT_TIMED) {
+            metrics.onIdle(threadNamePrefix, Thread.currentThread().getName(), now - idleStart);
+        }
+        return now;
+    }
+
+    /**
+     * 正在处理的任务
+     */
+    private class RunningTask {
+        private static final int IN_PROGRESS = 0;
+        private static final int FINISHED = 1;
+        private static final int ABANDONED = 2;
+        private final I id;
+        private final Thread thread;
+        private final long startNanos;
+        private final long timeoutNanos;
+        private final AtomicInteger state = new AtomicInteger(IN_PROGRESS);
+        /**
+         * 已经从 tasks（或者再次排队）和 runningTasks 中处理完毕
+         */
+        private final CountDownLatch released = new CountDownLatch(1);
+        /**
+         * 处理期间是否被再次添加过，由 this 锁保护，状态不再是 IN_PROGRESS 后不会再变化
+         */
+        private boolean rerun;
+        private Consumer<I> rerunBefore;
+
+        private RunningTask(I id, Thread thread, long timeoutNanos) {
+            this.id = id;
+            this.thread = thread;
+            this.timeoutNanos = timeoutNanos;
+            // 不受看门狗控制时不需要获取时间
+            this.startNanos = timeoutNanos > 0 ? System.nanoTime() : 0;
+        }
+
+        private boolean isTimeout(long now) {
+            return timeoutNanos > 0 && now - startNanos > timeoutNanos;
+        }
+
+        /**
+         * 正常处理完成，返回 false 说明已经被看门狗放弃了
+         */
+        private synchronized boolean finish() {
+            return state.compareAndSet(IN_PROGRESS, FINISHED);
+        }
+
+        private synchronized boolean abandon() {
+            return state.compareAndSet(IN_PROGRESS, ABANDONED);
+        }
+
+        /**
+         * 标记处理完成后需要再处理一次，多次标记只会再处理一次
+         *
+         * @return 已经处理完成或被放弃、并且之前没有被标记过时返回 false；
+         * 已经被标记过时返回 true，即使已经处理完成，ID 也会保留在 tasks 中再排队一次
+         */
+        private synchronized boolean markRerun(Consumer<I> rerunBefore) {
+            if (state.get() != IN_PROGRESS) {
+                return rerun;
+            }
+            if (!rerun) {
+                rerun = true;
+                this.rerunBefore = rerunBefore;
+            }
+            return true;
+        }
+
+        private boolean isAbandoned() {
+            return state.get() == ABANDONED;
+        }
+
+        private void released() {
+            released.countDown();
+        }
+
+        /**
+         * 等待处理完成的任务被移除，不响应中断，等待期间被中断会在返回后恢复中断状态
+         */
+        private void awaitReleased() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    released.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * tryAddTask 的添加结果
+     */
+    public enum AddResult {
+        /**
+         * 已进入排队（包括进入溢出队列）
+         */
+        QUEUED,
+        /**
+         * 已经在排队中，本次添加被忽略
+         */
+        ALREADY_PRESENT,
+        /**
+         * 正在处理中，处理完成后会再处理一次；处理期间的多次添加只会再处理一次
+         */
+        RERUN_SCHEDULED,
+        /**
+         * 队列已满被拒绝
+         */
+        REJECTED,
+        /**
+         * 队列已满，已经由调用方线程处理完成
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * 队列已满时的溢出策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 拒绝，返回 {@link AddResult#REJECTED}
+         */
+        REJECT,
+        /**
+         * 由调用 tryAddTask 的线程直接处理
+         */
+        CALLER_RUNS,
+        /**
+         * 丢弃队列中最早排队的 ID，当前 ID 进入队列；适用于定时扫表的场景
+         * 被丢弃的 ID 已经回调过 addBefore，需要通过 {@link #setOverflowPolicy(OverflowPolicy, Consumer)} 设置丢弃回调，
+         * 把状态改回去，下一次扫表才能重新发现
+         */
+        DISCARD_OLDEST,
+        /**
+         * 放入无界的溢出队列中，任务队列有空位时会自动补充进去；注意溢出队列是无界的，需要自己评估内存
+         */
+        SPILL
+    }
+
     public interface HandlerService<I> {
         /**
          * 处理数据：该方法的实现类，需要自己处理异常，不要把异常抛出
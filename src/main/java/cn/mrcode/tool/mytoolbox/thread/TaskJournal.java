@@ -0,0 +1,492 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 简单任务分发器的本地任务日志
+ * <pre>
+ *  解决的问题：服务重启（发布）时，SimpleTaskDispatcher 中排队和处理中的 ID 全部丢失，只能依靠下一次全表扫描重新发现
+ *  本工具会把 ID 的 入队（admit）、完成（complete）事件追加写入到本地磁盘的内存映射文件中，
+ *  重启时从日志中恢复出还没有完成的 ID，重新放入队列，这样启动时就可以跳过恢复性质的全表扫描
+ *
+ *  实现方式：
+ *    1. 追加写：每条记录为 [类型 1 字节][长度 4 字节][ID 编码]，写入内存映射文件，进程崩溃时已经写入 page cache 的数据不会丢失
+ *    2. 组提交：后台线程每隔 flushIntervalMillis 统一 force 一次，多次写入共享一次刷盘；为 0 时每次写入后都等待刷盘完成
+ *       刷盘都在 admit、complete 的锁之外进行，同时写入的线程共享同一次刷盘，刷盘期间不会阻塞其他线程写入
+ *    3. 压缩：文件写满时，只把还未完成的 ID 重写到新一代的文件中（path.1、path.2 ...），所以文件大小只和未完成的 ID 数量有关
+ *       新文件先完整写入临时文件，再原子移动为新一代的文件名，不会覆盖正在映射的旧文件（Windows 不允许替换、删除被映射的文件）
+ *       旧文件的映射要等到被 GC 回收时才会释放，Windows 上删除失败的旧文件会在下一次启动或压缩时再删除
+ *
+ *  注意：处理中的 ID 恢复后会被再次处理，所以 handle 需要是幂等的（至少一次语义）
+ *  使用示例：
+ *     TaskJournal<Long> journal = new TaskJournal<>(Path.of("data/task.journal"), TaskJournal.IdCodec.LONG);
+ *     SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(4, 100, "Task-", handlerService, journal);
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+@Slf4j
+public class TaskJournal<I> implements Closeable {
+    private static final byte ADMIT = 1;
+    private static final byte COMPLETE = 2;
+    /**
+     * 记录头：类型 1 字节 + 长度 4 字节
+     */
+    private static final int HEADER_SIZE = 5;
+    private static final int DEFAULT_INITIAL_SIZE = 4 * 1024 * 1024;
+
+    private final Path path;
+    private final IdCodec<I> codec;
+    private final int initialSize;
+    private final long flushIntervalMillis;
+    /**
+     * 还未完成的 ID，按入队顺序排列，value 是编码后的长度，用于计算压缩后的文件大小
+     */
+    private final Map<I, Integer> live = new LinkedHashMap<>();
+    private long liveBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /**
+     * 当前文件的代号，实际的文件为 path.generation
+     */
+    private long generation;
+    /**
+     * 写入序号，每次写入加 1，由 this 锁保护
+     */
+    private long writeSeq;
+    /**
+     * 已经刷盘的写入序号，由 forceLock 保护
+     */
+    private long forcedSeq;
+    /**
+     * 刷盘锁：同一时间只有一个线程刷盘，等待的线程拿到锁后，如果自己的写入已经被刷盘了就直接返回
+     * 使用 ReentrantLock，虚拟线程等待时不会占住载体线程
+     */
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private volatile boolean closed;
+    /**
+     * 后台刷盘线程，第一次写入时启动，由 this 锁保护
+     */
+    private Thread flushThread;
+
+    public TaskJournal(Path path, IdCodec<I> codec) {
+        this(path, codec, DEFAULT_INITIAL_SIZE, 100);
+    }
+
+    /**
+     * @param path                日志文件路径，实际的文件为 path.1、path.2 ...（每次压缩代号加 1），压缩时会使用 path + ".tmp" 临时文件
+     * @param codec               ID 的编码方式
+     * @param initialSize         日志文件的初始大小（字节），写满后会压缩，并按未完成的 ID 数量扩容
+     * @param flushIntervalMillis 组提交刷盘间隔，小于等于 0 表示每次写入都刷盘
+     */
+    public TaskJournal(Path path, IdCodec<I> codec, int initialSize, long flushIntervalMillis) {
+        if (initialSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("initialSize 必须大于 " + HEADER_SIZE);
+        }
+        this.path = Objects.requireNonNull(path);
+        this.codec = Objects.requireNonNull(codec);
+        this.initialSize = initialSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        try {
+            generation = latestGeneration();
+            if (generation > 0) {
+                replay(generationPath(generation));
+            } else if (Files.exists(path)) {
+                // 旧版本直接写在 path 中
+                replay(path);
+            }
+            // 启动时直接压缩一次，丢掉已经完成的记录，也顺带截掉了崩溃时写了一半的记录
+            rewrite(0);
+            deleteStaleFiles();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 日志中还未完成的 ID，按入队顺序排列
+     *
+     * @return
+     */
+    public synchronized List<I> recover() {
+        return new ArrayList<>(live.keySet());
+    }
+
+    /**
+     * 记录 ID 进入队列
+     *
+     * @param id
+     */
+    public void admit(I id) {
+        long seq;
+        synchronized (this) {
+            ensureOpen();
+            byte[] bytes = codec.encode(id);
+            if (live.putIfAbsent(id, bytes.length) != null) {
+                return;
+            }
+            liveBytes += HEADER_SIZE + bytes.length;
+            seq = append(ADMIT, bytes);
+        }
+        if (flushIntervalMillis <= 0) {
+            forceTo(seq);
+        }
+    }
+
+    /**
+     * 记录 ID 已经处理完成（或者被丢弃），重启时不会再恢复
+     * <pre>
+     *  关闭之后调用不做任何处理：比如 shutdownNow、等待超时之后还在处理的 handle 完成了，
+     *  这个 ID 会保留在日志中，重启时再处理一次（至少一次语义），而不是让 worker 因为异常退出
+     * </pre>
+     *
+     * @param id
+     */
+    public void complete(I id) {
+        long seq;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            Integer length = live.remove(id);
+            if (length == null) {
+                return;
+            }
+            liveBytes -= HEADER_SIZE + length;
+            seq = append(COMPLETE, codec.encode(id));
+        }
+        if (flushIntervalMillis <= 0) {
+            forceTo(seq);
+        }
+    }
+
+    /**
+     * 立即刷盘
+     */
+    public void flush() {
+        long seq;
+        synchronized (this) {
+            seq = writeSeq;
+        }
+        forceTo(seq);
+    }
+
+    /**
+     * 刷盘，直到序号为 seq 的写入已经刷盘
+     * <pre>
+     *  刷盘不持有 this 锁，刷盘期间不影响写入；如果期间发生了压缩，新文件在压缩时已经刷过盘
+     * </pre>
+     */
+    private void forceTo(long seq) {
+        forceLock.lock();
+        try {
+            if (forcedSeq >= seq) {
+                return;
+            }
+            MappedByteBuffer toForce;
+            long target;
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                toForce = buffer;
+                target = writeSeq;
+            }
+            toForce.force();
+            forcedSeq = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * 刷盘并关闭文件，关闭后不能再写入
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (this) {
+            if (flushThread != null) {
+                flushThread.interrupt();
+            }
+        }
+        flush();
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭任务日志文件失败：{}", path, e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * 追加一条记录，需要持有 this 锁
+     *
+     * @return 这次写入的序号
+     */
+    private long append(byte type, byte[] bytes) {
+        startFlushThread();
+        writeSeq++;
+        int recordSize = HEADER_SIZE + bytes.length;
+        // 至少留 1 字节的结束标记
+        if (buffer.remaining() < recordSize + 1) {
+            try {
+                rewrite(recordSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // 压缩后的文件中已经包含了当前 ID 的入队记录，完成记录则不需要再写
+            return writeSeq;
+        }
+        int position = buffer.position();
+        // 先写长度和内容，最后写类型，类型不为 0 才表示这条记录写完整了
+        buffer.position(position + 1);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        buffer.put(position, type);
+        return writeSeq;
+    }
+
+    /**
+     * 第一次写入时启动后台刷盘线程，不在构造方法中启动，避免对象还没有构造完成就被其他线程使用
+     */
+    private void startFlushThread() {
+        if (flushIntervalMillis <= 0 || flushThread != null) {
+            return;
+        }
+        flushThread = new Thread(this::flushLoop, "TaskJournal-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * 读取日志文件，还原出未完成的 ID
+     * <pre>
+     *  读取到堆内存中而不是映射，读取完成后就可以删除这个文件
+     * </pre>
+     */
+    private void replay(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // 读取到文件末尾
+            }
+            buf.flip();
+        }
+        try {
+            while (buf.remaining() > HEADER_SIZE) {
+                byte type = buf.get();
+                if (type != ADMIT && type != COMPLETE) {
+                    // END 或者崩溃时没有写完整的记录
+                    break;
+                }
+                int length = buf.getInt();
+                if (length < 0 || length > buf.remaining()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                buf.get(bytes);
+                I id = codec.decode(bytes);
+                if (type == ADMIT) {
+                    if (live.putIfAbsent(id, length) == null) {
+                        liveBytes += HEADER_SIZE + length;
+                    }
+                } else if (live.remove(id) != null) {
+                    liveBytes -= HEADER_SIZE + length;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            log.warn("任务日志文件末尾不完整，忽略后面的数据：{}", file);
+        }
+    }
+
+    /**
+     * 压缩：把未完成的 ID 写入新一代的文件，再切换到新文件
+     *
+     * @param reserve 新文件中需要额外预留的空间
+     */
+    private void rewrite(int reserve) throws IOException {
+        long size = Math.max(initialSize, (liveBytes + reserve) * 2 + 1);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("任务日志中未完成的 ID 太多，超过了单个文件的映射上限");
+        }
+        ByteBuffer content = ByteBuffer.allocate((int) liveBytes);
+        for (I id : live.keySet()) {
+            byte[] bytes = codec.encode(id);
+            content.put(ADMIT);
+            content.putInt(bytes.length);
+            content.put(bytes);
+        }
+        content.flip();
+        // 先完整写入临时文件并刷盘，再原子移动为新一代的文件，崩溃时最新一代的文件一定是完整的
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                tmpChannel.write(content);
+            }
+            tmpChannel.force(true);
+        }
+        long newGeneration = generation + 1;
+        Path newPath = generationPath(newGeneration);
+        Files.move(tmp, newPath, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel newChannel = FileChannel.open(newPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // 映射的大小超过文件大小时会自动扩展文件，扩展的部分都是 0，也就是结束标记
+        MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        newBuffer.position((int) liveBytes);
+        if (channel != null) {
+            channel.close();
+            deleteQuietly(generationPath(generation));
+        }
+        channel = newChannel;
+        buffer = newBuffer;
+        generation = newGeneration;
+    }
+
+    private Path generationPath(long generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * @return 目录中最新一代的文件代号，没有时返回 0
+     */
+    private long latestGeneration() throws IOException {
+        long latest = 0;
+        for (long g : generations()) {
+            latest = Math.max(latest, g);
+        }
+        return latest;
+    }
+
+    private List<Long> generations() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        List<Long> result = new ArrayList<>();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.length() > prefix.length() && name.startsWith(prefix)
+                            && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+                    .forEach(name -> result.add(Long.parseLong(name.substring(prefix.length()))));
+        }
+        return result;
+    }
+
+    /**
+     * 删除旧版本的文件和之前没有删除成功的旧一代的文件
+     */
+    private void deleteStaleFiles() throws IOException {
+        deleteQuietly(path);
+        for (long g : generations()) {
+            if (g < generation) {
+                deleteQuietly(generationPath(g));
+            }
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Windows 上旧文件的映射还没有被回收时无法删除，下一次启动时再删除
+            log.debug("删除旧的任务日志文件失败：{}", file, e);
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(flushIntervalMillis);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("任务日志刷盘失败：{}", path, e);
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("任务日志已经关闭：" + path);
+        }
+    }
+
+    /**
+     * ID 的编码方式
+     */
+    public interface IdCodec<I> {
+        IdCodec<Long> LONG = new IdCodec<>() {
+            @Override
+            public byte[] encode(Long id) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+            }
+
+            @Override
+            public Long decode(byte[] bytes) {
+                return ByteBuffer.wrap(bytes).getLong();
+            }
+        };
+
+        IdCodec<Integer> INTEGER = new IdCodec<>() {
+            @Override
+            public byte[] encode(Integer id) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(id).array();
+            }
+
+            @Override
+            public Integer decode(byte[] bytes) {
+                return ByteBuffer.wrap(bytes).getInt();
+            }
+        };
+
+        IdCodec<String> STRING = new IdCodec<>() {
+            @Override
+            public byte[] encode(String id) {
+                return id.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        byte[] encode(I id);
+
+        I decode(byte[] bytes);
+    }
+}
@@ -0,0 +1,109 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 跟踪每条数据从产生到写入成功的过程，统计端到端耗时，检查丢失和重复
+ * <pre>
+ *  产生时记录 ID 和计划产生的时间，写入成功或者最终失败时移除：
+ *    移除时 ID 已经不存在，说明同一条数据被处理了两次（重复）
+ *    全部处理完成后仍然存在的 ID，说明数据丢失了
+ *  端到端耗时从计划产生的时间开始计算，生产方被队列阻塞的时间也会计算在内（避免 coordinated omission）
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class DeliveryTracker {
+    private final Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+    /**
+     * 每次报告后清零的端到端耗时
+     */
+    private final LongHistogram latency = new LongHistogram();
+    private final LongHistogram totalLatency = new LongHistogram();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+
+    /**
+     * 数据产生，需要在交给处理器之前调用
+     *
+     * @param id             数据 ID，不能重复
+     * @param scheduledNanos 计划产生的时间（System.nanoTime）
+     */
+    public void produced(long id, long scheduledNanos) {
+        inFlight.put(id, scheduledNanos);
+        produced.increment();
+    }
+
+    /**
+     * 数据写入成功
+     *
+     * @param id
+     */
+    public void delivered(long id) {
+        Long scheduledNanos = inFlight.remove(id);
+        if (scheduledNanos == null) {
+            duplicated.increment();
+            return;
+        }
+        long cost = System.nanoTime() - scheduledNanos;
+        latency.record(cost);
+        totalLatency.record(cost);
+        delivered.increment();
+    }
+
+    /**
+     * 数据重试后仍然写入失败，不算丢失
+     *
+     * @param id
+     */
+    public void failed(long id) {
+        if (inFlight.remove(id) == null) {
+            duplicated.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * @return 已经产生但还没有处理完成的数据条数，全部处理完成后就是丢失的条数
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getProduced() {
+        return produced.sum();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDuplicated() {
+        return duplicated.sum();
+    }
+
+    /**
+     * @return 上一次调用之后的端到端耗时快照
+     */
+    public LongHistogram.Snapshot latencySnapshotAndReset() {
+        return latency.snapshotAndReset();
+    }
+
+    /**
+     * @return 整个运行期间的端到端耗时快照
+     */
+    public LongHistogram.Snapshot totalLatencySnapshot() {
+        return totalLatency.snapshot();
+    }
+}
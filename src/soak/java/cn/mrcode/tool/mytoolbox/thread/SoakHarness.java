@@ -0,0 +1,277 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * BatchProcessor、SimpleTaskDispatcher 的长时间压测（soak test）
+ * <pre>
+ *  解决的问题：JMH 基准测试只能看到几秒内的吞吐量，看不到下游变慢、抖动、报错时几个小时内队列和延迟的变化，
+ *  上线前也无法验证 线程数、批量大小、队列容量 的配置是否够用
+ *
+ *  生产方按固定速率产生数据，交给处理器写入 StubSink 模拟的下游，写入失败时重试，
+ *  每隔一段时间输出一次报告：吞吐量、端到端耗时分位数、队列长度分布（HistogramMetricsListener）、下游错误、GC 次数和耗时、堆内存
+ *  结束时等待处理器处理完所有数据，检查 丢失 和 重复 的数据，有丢失或者重复时进程以状态码 1 退出
+ *
+ *  运行：gradle soak -Psoak.target=BATCH -Psoak.duration=3600 -Psoak.rate=5000 -Psoak.latencyMs=20 -Psoak.errorRate=0.01
+ *  参数（都通过 -Psoak.xxx 传入，括号中为默认值）：
+ *    target：BATCH 或 DISPATCHER（BATCH）
+ *    duration：运行秒数（60）
+ *    report：报告间隔秒数（10）
+ *    rate：每秒产生的数据条数，所有生产线程的总和（2000）
+ *    producers：生产线程数（2）
+ *    workers：处理线程数，DISPATCHER 虚拟线程模式下是最大并发数（4）
+ *    batchSize：BATCH 每批最多的条数，0 表示每次处理 1 条（100）
+ *    capacity：队列容量（10000）
+ *    virtualThread：DISPATCHER 是否使用虚拟线程模式（false）
+ *    latencyMs、latencySigma、perItemMicros：下游每次写入的耗时中位数、对数正态分布的 sigma、每条数据的耗时（5、0.5、10）
+ *    errorRate：下游写入失败的概率（0.001）
+ *    stallEvery、stallMs：每隔多少秒下游卡住多少毫秒，0 表示不卡住（300、3000）
+ *    maxRetries：写入失败后最多重试的次数，超过后记为失败，不算丢失（3）
+ *    drainTimeout：结束时等待处理完剩余数据的最长秒数（300）
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+@Slf4j
+public class SoakHarness {
+    private final Target target = Target.valueOf(stringProperty("target", "BATCH").toUpperCase(Locale.ROOT));
+    private final long durationSeconds = Long.getLong("soak.duration", 60);
+    private final long reportSeconds = Long.getLong("soak.report", 10);
+    private final long rate = Long.getLong("soak.rate", 2000);
+    private final int producers = Integer.getInteger("soak.producers", 2);
+    private final int workers = Integer.getInteger("soak.workers", 4);
+    private final int batchSize = Integer.getInteger("soak.batchSize", 100);
+    private final int capacity = Integer.getInteger("soak.capacity", 10_000);
+    private final boolean virtualThread = Boolean.parseBoolean(stringProperty("virtualThread", "false"));
+    private final int maxRetries = Integer.getInteger("soak.maxRetries", 3);
+    private final long drainTimeoutSeconds = Long.getLong("soak.drainTimeout", 300);
+
+    private final StubSink sink = new StubSink(
+            doubleProperty("latencyMs", 5),
+            doubleProperty("latencySigma", 0.5),
+            Long.getLong("soak.perItemMicros", 10),
+            doubleProperty("errorRate", 0.001),
+            TimeUnit.SECONDS.toMillis(Long.getLong("soak.stallEvery", 300)),
+            Long.getLong("soak.stallMs", 3000));
+    private final DeliveryTracker tracker = new DeliveryTracker();
+    private final HistogramMetricsListener metrics = new HistogramMetricsListener();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean producing = true;
+
+    private final long startNanos = System.nanoTime();
+    private long lastReportNanos = startNanos;
+    private long lastDelivered;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean ok = new SoakHarness().run();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * @return 没有丢失和重复的数据时返回 true
+     */
+    public boolean run() throws InterruptedException {
+        if (rate <= 0 || producers <= 0) {
+            throw new IllegalArgumentException("rate、producers 必须大于 0");
+        }
+        log.info("开始压测：target={} duration={}s rate={}/s producers={} workers={} batchSize={} capacity={} virtualThread={}",
+                target, durationSeconds, rate, producers, workers, batchSize, capacity, virtualThread);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SoakHarness-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+
+        boolean drained = switch (target) {
+            case BATCH -> runBatchProcessor();
+            case DISPATCHER -> runDispatcher();
+        };
+
+        reporter.shutdownNow();
+        report();
+        return summary(drained);
+    }
+
+    private boolean runBatchProcessor() throws InterruptedException {
+        BatchProcessor<Long> processor = new BatchProcessor<>(capacity);
+        processor.setThreadNamePrefix("SoakBatch-");
+        processor.setMetricsListener(metrics);
+        processor.start((entity, entitys) -> write(entitys == null ? List.of(entity) : entitys), workers, batchSize);
+
+        produce(processor::put);
+        // await 会等待队列中剩余的数据处理完，并处理每个线程中不满一批的数据；
+        // 它没有超时时间，所以在单独的线程中等待，超过 drainTimeout 后不再等待
+        Thread drainThread = new Thread(processor::await, "SoakBatch-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+        drainThread.join(TimeUnit.SECONDS.toMillis(drainTimeoutSeconds));
+        if (drainThread.isAlive()) {
+            log.warn("{} 秒内没有处理完剩余的数据，剩余的数据会被记为丢失", drainTimeoutSeconds);
+            processor.stopQuietly();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean runDispatcher() throws InterruptedException {
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(workers, capacity, "SoakDispatcher-", virtualThread,
+                id -> write(List.of(id)), null);
+        dispatcher.setMetricsListener(metrics);
+
+        produce(dispatcher::addTask);
+        dispatcher.shutdown();
+        boolean terminated = dispatcher.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS);
+        if (!terminated) {
+            log.warn("{} 秒内没有处理完剩余的数据，剩余的数据会被记为丢失", drainTimeoutSeconds);
+            dispatcher.shutdownNow();
+        }
+        return terminated;
+    }
+
+    /**
+     * 启动生产线程按固定速率产生数据，运行 duration 秒后停止并等待生产线程退出
+     */
+    private void produce(ItemSink itemSink) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>(producers);
+        long intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(producers) / rate);
+        for (int i = 0; i < producers; i++) {
+            Thread thread = new Thread(() -> {
+                long next = System.nanoTime();
+                while (producing) {
+                    long now = System.nanoTime();
+                    if (now < next) {
+                        LockSupport.parkNanos(next - now);
+                        continue;
+                    }
+                    long id = sequence.getAndIncrement();
+                    tracker.produced(id, next);
+                    // 队列满时会阻塞，之后的数据按计划时间继续产生，阻塞的时间会计算到端到端耗时中
+                    itemSink.put(id);
+                    next += intervalNanos;
+                }
+            }, "SoakProducer-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        producing = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.info("停止生产，等待处理剩余的数据：inFlight={}", tracker.getInFlight());
+    }
+
+    /**
+     * 写入下游，失败时重试，超过重试次数后记为失败
+     */
+    private void write(List<Long> ids) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sink.write(ids);
+                ids.forEach(tracker::delivered);
+                return;
+            } catch (InterruptedException e) {
+                // shutdownNow 时会中断处理线程，这批数据没有写入成功，保留在 inFlight 中记为丢失
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries) {
+                    ids.forEach(tracker::failed);
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - startNanos) / 1e9;
+        double intervalSeconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        long delivered = tracker.getDelivered();
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        LongHistogram.Snapshot latency = tracker.latencySnapshotAndReset();
+
+        log.info("""
+                        [{}s] produced={} delivered={} throughput={}/s inFlight={} failed={} duplicated={} sinkErrors={} sinkStalls={}
+                          e2eMs(p50/p99/p999/max)={} gc(count/ms)={}/{} heapMb={}
+                        {}""",
+                Math.round(elapsedSeconds), tracker.getProduced(), delivered,
+                Math.round((delivered - lastDelivered) / intervalSeconds), tracker.getInFlight(),
+                tracker.getFailed(), tracker.getDuplicated(), sink.getErrors(), sink.getStalls(),
+                percentiles(latency), gcCount - lastGcCount, gcMillis - lastGcMillis, heapUsed / (1024 * 1024),
+                metrics.report(true));
+
+        lastReportNanos = now;
+        lastDelivered = delivered;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+    }
+
+    private boolean summary(boolean drained) {
+        long produced = tracker.getProduced();
+        long lost = tracker.getInFlight();
+        long duplicated = tracker.getDuplicated();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info("""
+                        压测结束：target={} 运行 {}s
+                          produced={} delivered={} failed={} lost={} duplicated={} drained={}
+                          平均吞吐量={}/s e2eMs(p50/p99/p999/max)={} sinkWrites={} sinkErrors={}""",
+                target, Math.round(seconds),
+                produced, tracker.getDelivered(), tracker.getFailed(), lost, duplicated, drained,
+                Math.round(tracker.getDelivered() / seconds), percentiles(tracker.totalLatencySnapshot()),
+                sink.getWrites(), sink.getErrors());
+        if (lost > 0 || duplicated > 0) {
+            log.error("检查失败：丢失 {} 条，重复 {} 条", lost, duplicated);
+            return false;
+        }
+        return true;
+    }
+
+    private static String percentiles(LongHistogram.Snapshot snapshot) {
+        return "%.1f/%.1f/%.1f/%.1f".formatted(millis(snapshot.percentile(0.5)), millis(snapshot.percentile(0.99)),
+                millis(snapshot.percentile(0.999)), millis(snapshot.getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String stringProperty(String name, String defaultValue) {
+        return System.getProperty("soak." + name, defaultValue);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        return Double.parseDouble(stringProperty(name, String.valueOf(defaultValue)));
+    }
+
+    public enum Target {
+        BATCH,
+        DISPATCHER
+    }
+
+    private interface ItemSink {
+        void put(Long id);
+    }
+}
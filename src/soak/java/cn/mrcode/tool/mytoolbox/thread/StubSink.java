@@ -0,0 +1,107 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟的下游存储（数据库、HTTP 接口等），用于长时间压测 BatchProcessor、SimpleTaskDispatcher
+ * <pre>
+ *  每次写入的耗时 = 对数正态分布的随机耗时（中位数 latencyMillis，离散程度 latencySigma）+ 每条数据的耗时 * 条数
+ *  按 errorRate 的概率在耗时之后抛出异常，模拟超时、连接断开
+ *  每隔 stallEveryMillis 卡住 stallMillis，卡住期间开始的写入都会等到卡住结束，模拟锁表、主从切换
+ * </pre>
+ *
+ * @author mrcode
+ * @date 2026/10/19
+ * @since 0.1.8
+ */
+public class StubSink {
+    private final double latencyMillis;
+    private final double latencySigma;
+    private final long perItemNanos;
+    private final double errorRate;
+    private final long stallEveryNanos;
+    private final long stallNanos;
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+
+    /**
+     * @param latencyMillis    每次写入耗时的中位数，0 表示不休眠
+     * @param latencySigma     对数正态分布的 sigma，0 表示固定耗时，1 左右时 p99 约为中位数的 10 倍
+     * @param perItemMicros    每条数据额外的耗时
+     * @param errorRate        写入失败的概率，0 ~ 1
+     * @param stallEveryMillis 卡住的间隔，0 表示不卡住
+     * @param stallMillis      每次卡住的时长
+     */
+    public StubSink(double latencyMillis, double latencySigma, long perItemMicros, double errorRate,
+                    long stallEveryMillis, long stallMillis) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("errorRate 必须在 0 ~ 1 之间");
+        }
+        this.latencyMillis = latencyMillis;
+        this.latencySigma = latencySigma;
+        this.perItemNanos = TimeUnit.MICROSECONDS.toNanos(perItemMicros);
+        this.errorRate = errorRate;
+        this.stallEveryNanos = TimeUnit.MILLISECONDS.toNanos(stallEveryMillis);
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+    }
+
+    /**
+     * 写入一批数据
+     *
+     * @param ids 数据
+     * @throws InterruptedException 等待期间被中断
+     * @throws IllegalStateException 模拟的写入失败
+     */
+    public void write(List<Long> ids) throws InterruptedException {
+        writes.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sleepNanos = stallRemainingNanos();
+        if (sleepNanos > 0) {
+            stalls.increment();
+        }
+        if (latencyMillis > 0) {
+            double millis = latencyMillis * Math.exp(latencySigma * random.nextGaussian());
+            sleepNanos += (long) (millis * 1_000_000);
+        }
+        sleepNanos += perItemNanos * ids.size();
+        if (sleepNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            errors.increment();
+            throw new IllegalStateException("模拟写入失败");
+        }
+    }
+
+    /**
+     * 当前处于卡住的时间段时，返回到卡住结束还需要等待的时间
+     */
+    private long stallRemainingNanos() {
+        if (stallEveryNanos <= 0 || stallNanos <= 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        // 每个周期的最后 stallNanos 是卡住的时间段，第一次卡住发生在 stallEvery 之后
+        long position = elapsed % stallEveryNanos;
+        long stallStart = stallEveryNanos - stallNanos;
+        return position >= stallStart ? stallEveryNanos - position : 0;
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getStalls() {
+        return stalls.sum();
+    }
+}
@@ -0,0 +1,87 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import cn.mrcode.tool.mytoolbox.lang.tree.TreeUtilTest.Node;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑树测试
+ */
+class CompactTreeTest {
+
+    @Test
+    void cursor() {
+        List<Node> list = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户"),
+                new Node(5, -1, "订单管理")
+        );
+        CompactTree<Integer> tree = CompactTree.build(list, Node::getId, Node::getPid, pid -> pid == -1);
+
+        // 先序遍历
+        List<Integer> preOrder = new ArrayList<>();
+        CompactTree<Integer>.Cursor cursor = tree.cursor();
+        do {
+            preOrder.add(cursor.key());
+        } while (cursor.toNextPreOrder());
+        Assertions.assertEquals(List.of(1, 2, 4, 3, 5), preOrder);
+
+        // 遍历子节点
+        CompactTree<Integer>.Cursor children = tree.cursor(1);
+        List<Integer> childIds = new ArrayList<>();
+        if (children.toFirstChild()) {
+            do {
+                childIds.add(children.key());
+            } while (children.toNextSibling());
+        }
+        Assertions.assertEquals(List.of(2, 3), childIds);
+        Assertions.assertTrue(children.toParent());
+        Assertions.assertEquals(1, children.key());
+        Assertions.assertFalse(tree.cursor(99).isValid());
+    }
+
+    /**
+     * long 类型的 id：key 保存在 long[] 中，结构和 build 构建的一致
+     */
+    @Test
+    void buildLong() {
+        List<Node> list = TreeUtilTest.randomTree(100_000, 3);
+        CompactTree<Integer> boxed = CompactTree.build(list, Node::getId, Node::getPid, pid -> pid == -1);
+        CompactTree<Long> tree = CompactTree.buildLong(list, Node::getId, Node::getPid, pid -> pid == -1);
+        Assertions.assertEquals(boxed.size(), tree.size());
+        Assertions.assertEquals(boxed.getFirstRoot(), tree.getFirstRoot());
+        for (int i = 0; i < tree.size(); i++) {
+            Assertions.assertEquals(boxed.getKey(i).longValue(), tree.getLongKey(i));
+            Assertions.assertEquals(boxed.getParent(i), tree.getParent(i));
+            Assertions.assertEquals(boxed.getFirstChild(i), tree.getFirstChild(i));
+            Assertions.assertEquals(boxed.getNextSibling(i), tree.getNextSibling(i));
+        }
+
+        int index = boxed.indexOf(list.get(0).getId());
+        Assertions.assertEquals(index, tree.indexOfLong(list.get(0).getId()));
+        Assertions.assertEquals(index, tree.indexOf((long) list.get(0).getId()));
+        Assertions.assertEquals(list.get(0).getId().longValue(), tree.cursorOfLong(list.get(0).getId()).longKey());
+        Assertions.assertFalse(tree.cursorOfLong(-99).isValid());
+        Assertions.assertThrows(IllegalStateException.class, () -> boxed.indexOfLong(1));
+    }
+
+    @Test
+    void toNodes() {
+        List<Node> list = TreeUtilTest.randomTree(200_000, 6);
+        CompactTree<Integer> tree = CompactTree.build(list, Node::getId, Node::getPid, pid -> pid == -1);
+        Assertions.assertEquals(200_000, tree.size());
+
+        Map<Integer, Node> byId = new HashMap<>();
+        list.forEach(node -> byId.put(node.getId(), node));
+        List<Node> nodes = tree.toNodes(i -> byId.get(tree.getKey(i)).copy(), Node::childs);
+        List<Node> expected = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        Assertions.assertEquals(expected, nodes);
+    }
+}
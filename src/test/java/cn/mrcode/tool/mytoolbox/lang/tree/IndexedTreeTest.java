@@ -0,0 +1,83 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import cn.mrcode.tool.mytoolbox.lang.tree.TreeUtilTest.Node;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 带索引的树测试
+ */
+class IndexedTreeTest {
+
+    @Test
+    void query() {
+        List<Node> list = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户"),
+                new Node(5, 2, "删除用户"),
+                new Node(6, -1, "订单管理")
+        );
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        IndexedTree<Node, Integer> tree = new IndexedTree<>(roots, Node::getId, Node::getChilds);
+
+        Assertions.assertTrue(tree.isDescendant(4, 1));
+        Assertions.assertFalse(tree.isDescendant(1, 1));
+        Assertions.assertFalse(tree.isDescendant(4, 3));
+        Assertions.assertEquals(List.of(2, 4, 5, 3), tree.getDescendants(1).stream().map(Node::getId).toList());
+        Assertions.assertEquals(List.of("系统管理", "用户管理", "删除用户"), tree.getPath(5).stream().map(Node::getName).toList());
+        Assertions.assertEquals(2, tree.getDepth(5));
+        Assertions.assertEquals(1, tree.getAncestor(5, 2).getId());
+        Assertions.assertNull(tree.getAncestor(5, 3));
+        Assertions.assertEquals(2, tree.getLowestCommonAncestor(4, 5).getId());
+        Assertions.assertEquals(1, tree.getLowestCommonAncestor(4, 3).getId());
+        Assertions.assertEquals(2, tree.getLowestCommonAncestor(2, 5).getId());
+        Assertions.assertNull(tree.getLowestCommonAncestor(4, 6));
+    }
+
+    @Test
+    void compareWithParentWalk() {
+        List<Node> list = TreeUtilTest.randomTree(50_000, 3);
+        Map<Integer, Integer> parents = new HashMap<>();
+        list.forEach(node -> parents.put(node.getId(), node.getPid()));
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        IndexedTree<Node, Integer> tree = new IndexedTree<>(roots, Node::getId, Node::getChilds);
+        Assertions.assertEquals(50_000, tree.size());
+
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            int a = 1 + random.nextInt(50_000);
+            int b = 1 + random.nextInt(50_000);
+            List<Integer> pathA = pathOf(a, parents);
+            List<Integer> pathB = pathOf(b, parents);
+            Assertions.assertEquals(pathA.contains(b) && a != b, tree.isDescendant(a, b));
+            Integer lca = null;
+            for (Integer id : pathA) {
+                if (pathB.contains(id)) {
+                    lca = id;
+                    break;
+                }
+            }
+            Node actual = tree.getLowestCommonAncestor(a, b);
+            Assertions.assertEquals(lca, actual == null ? null : actual.getId());
+        }
+    }
+
+    /**
+     * 从自己到根节点的路径
+     */
+    private static List<Integer> pathOf(int id, Map<Integer, Integer> parents) {
+        List<Integer> path = new ArrayList<>();
+        for (Integer current = id; current != -1; current = parents.get(current)) {
+            path.add(current);
+        }
+        return path;
+    }
+}
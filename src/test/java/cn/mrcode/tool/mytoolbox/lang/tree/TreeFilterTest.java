@@ -0,0 +1,52 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import cn.mrcode.tool.mytoolbox.lang.tree.TreeUtilTest.Node;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * 树过滤测试
+ */
+class TreeFilterTest {
+
+    @Test
+    void filter() {
+        List<Node> list = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户"),
+                new Node(5, 2, "删除用户"),
+                new Node(6, 3, "新增角色"),
+                new Node(7, -1, "订单管理")
+        );
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        String before = JSONObject.toJSONString(roots);
+
+        List<Node> result = TreeFilter.filter(roots, Node::getChilds, node -> node.getName().contains("新增"), Node::copy, Node::childs);
+        System.out.println("搜索 新增：%s".formatted(JSONObject.toJSONString(result)));
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals(2, result.get(0).getChilds().size());
+        Assertions.assertEquals(List.of("新增用户"), result.get(0).getChilds().get(0).getChilds().stream().map(Node::getName).toList());
+
+        // 保留匹配节点的整个子树
+        List<Node> subtree = TreeFilter.filter(roots, Node::getChilds, node -> node.getName().equals("用户管理"), Node::copy, Node::childs, true);
+        Assertions.assertEquals(2, subtree.get(0).getChilds().get(0).getChilds().size());
+
+        // 原来的树没有被修改
+        Assertions.assertEquals(before, JSONObject.toJSONString(roots));
+    }
+
+    @Test
+    void filterParallel() {
+        List<Node> list = TreeUtilTest.randomTree(200_000, 5);
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        List<Node> serial = TreeFilter.filter(roots, Node::getChilds, node -> node.getName().endsWith("77"), Node::copy, Node::childs);
+        List<Node> parallel = TreeFilter.filterParallel(roots, Node::getChilds, node -> node.getName().endsWith("77"), Node::copy, Node::childs);
+        Assertions.assertEquals(serial, parallel);
+        Assertions.assertFalse(serial.isEmpty());
+    }
+}
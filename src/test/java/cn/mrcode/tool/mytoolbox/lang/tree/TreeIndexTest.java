@@ -0,0 +1,99 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import cn.mrcode.tool.mytoolbox.lang.tree.TreeUtilTest.Node;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 增量树索引测试
+ */
+class TreeIndexTest {
+
+    @Test
+    void incremental() {
+        List<Node> list = new ArrayList<>(List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户")
+        ));
+        TreeIndex<Node, Node, Integer> index = new TreeIndex<>(list, Node::copy, Node::getId, Node::getPid,
+                pid -> pid == -1, Node::childs, Comparator.comparing(Node::getName));
+        List<Node> before = index.getRoots();
+        String beforeJson = JSONObject.toJSONString(before);
+
+        // 父节点 6 还不存在，先放在索引中
+        index.add(new Node(5, 6, "订单列表"));
+        index.add(new Node(6, -1, "订单管理"));
+        index.update(new Node(3, 1, "权限管理"));
+        index.move(4, 3);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.move(1, 4));
+        Assertions.assertEquals(1, index.remove(2));
+        System.out.println("增量修改后的树：%s".formatted(JSONObject.toJSONString(index.getRoots())));
+
+        // 和用最新的数据全量构建的结果一致
+        List<Node> latest = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(3, 1, "权限管理"),
+                new Node(4, 3, "新增用户"),
+                new Node(6, -1, "订单管理"),
+                new Node(5, 6, "订单列表")
+        );
+        List<Node> expected = TreeUtil.buildTree(latest, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        // 4 的 pid 字段在 move 时没有变化
+        expected.get(0).getChilds().get(0).getChilds().get(0).setPid(2);
+        // 兄弟节点按名称排序
+        expected.sort(Comparator.comparing(Node::getName));
+        Assertions.assertEquals(expected, index.getRoots());
+        Assertions.assertEquals(5, index.size());
+
+        // 之前发布的快照没有被修改
+        Assertions.assertEquals(beforeJson, JSONObject.toJSONString(before));
+    }
+
+    /**
+     * 添加时父节点是自己，或者是等待这个节点的子孙节点，会形成环，直接拒绝
+     */
+    @Test
+    void addCycle() {
+        TreeIndex<Node, Node, Integer> index = new TreeIndex<>(List.of(new Node(1, -1, "系统管理")), Node::copy,
+                Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.add(new Node(2, 2, "自己")));
+
+        // 3 的父节点 4 还不存在，4 的父节点是 3 时就成了环
+        index.add(new Node(3, 4, "订单列表"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.add(new Node(4, 3, "订单管理")));
+        index.add(new Node(4, 1, "订单管理"));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(3, index.getRoots().get(0).getChilds().get(0).getChilds().get(0).getId());
+    }
+
+    @Test
+    void pathCopy() {
+        List<Node> list = TreeUtilTest.randomTree(100_000, 2);
+        TreeIndex<Node, Node, Integer> index = new TreeIndex<>(list, Node::copy, Node::getId, Node::getPid,
+                pid -> pid == -1, Node::childs);
+        List<Node> before = index.getRoots();
+
+        // 修改一个节点，只会复制它所在的根节点到它的路径，其他根节点的子树直接复用
+        Node leaf = list.stream().filter(n -> n.getId() > 99_000).findFirst().orElseThrow();
+        Node updated = leaf.copy();
+        updated.setName("updated");
+        index.update(updated);
+
+        Assertions.assertEquals("updated", index.getNode(leaf.getId()).getName());
+        List<Node> after = index.getRoots();
+        int copied = 0;
+        for (int i = 0; i < before.size(); i++) {
+            if (before.get(i) != after.get(i)) {
+                copied++;
+            }
+        }
+        Assertions.assertEquals(1, copied);
+    }
+}
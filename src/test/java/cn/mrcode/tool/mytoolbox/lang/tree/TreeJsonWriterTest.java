@@ -0,0 +1,74 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import cn.mrcode.tool.mytoolbox.lang.tree.TreeUtilTest.Node;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 树的流式 JSON 输出测试
+ */
+class TreeJsonWriterTest {
+
+    @Test
+    void write() {
+        List<Node> list = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户"),
+                new Node(5, -1, "订单管理")
+        );
+        TreeJsonWriter<Node> writer = new TreeJsonWriter<>();
+        writer.addField("id", Node::getId);
+        writer.addField("name", Node::getName);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(list, Node::getId, Node::getPid, pid -> pid == -1, out);
+        String json = out.toString(StandardCharsets.UTF_8);
+        System.out.println("原始数据输出：%s".formatted(json));
+        Assertions.assertEquals("[{\"id\":1,\"name\":\"系统管理\",\"children\":[{\"id\":2,\"name\":\"用户管理\",\"children\":[{\"id\":4,\"name\":\"新增用户\"}]},"
+                + "{\"id\":3,\"name\":\"角色管理\"}]},{\"id\":5,\"name\":\"订单管理\"}]", json);
+
+        // 已经构建好的树输出结果一致
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        out.reset();
+        writer.write(roots, Node::getChilds, out);
+        Assertions.assertEquals(json, out.toString(StandardCharsets.UTF_8));
+
+        out.reset();
+        writer.write(List.of(), Node::getChilds, out);
+        Assertions.assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeLargeTree() {
+        List<Node> list = TreeUtilTest.randomTree(200_000, 7);
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+
+        TreeJsonWriter<Node> writer = new TreeJsonWriter<>();
+        writer.addField("id", Node::getId);
+        writer.addField("pid", Node::getPid);
+        writer.addField("name", Node::getName);
+        writer.setChildrenFieldName("childs");
+        // 较小的阈值，测试多次写入输出流
+        writer.setFlushThreshold(4096);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long start = System.currentTimeMillis();
+        writer.write(list, Node::getId, Node::getPid, pid -> pid == -1, out);
+        System.out.println("20 万节点流式输出 %s ms，%s 字节".formatted(System.currentTimeMillis() - start, out.size()));
+
+        Object expected = JSON.parseArray(JSONObject.toJSONString(roots));
+        Assertions.assertEquals(expected, JSON.parseArray(out.toString(StandardCharsets.UTF_8)));
+
+        out.reset();
+        writer.write(roots, Node::getChilds, out);
+        Assertions.assertEquals(expected, JSON.parseArray(out.toString(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,123 @@
+package cn.mrcode.tool.mytoolbox.lang.tree;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 树工具测试
+ */
+class TreeUtilTest {
+
+    @Test
+    void buildTree() {
+        List<Node> list = List.of(
+                new Node(1, -1, "系统管理"),
+                new Node(2, 1, "用户管理"),
+                new Node(3, 1, "角色管理"),
+                new Node(4, 2, "新增用户"),
+                // 重复的 id，以第一个为准
+                new Node(2, 1, "重复的用户管理"),
+                // 父节点不存在
+                new Node(5, 99, "孤儿节点")
+        );
+        List<Node> roots = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        System.out.println("树：%s".formatted(JSONObject.toJSONString(roots)));
+        Assertions.assertEquals(1, roots.size());
+        Assertions.assertEquals(2, roots.get(0).getChilds().size());
+        Assertions.assertEquals("用户管理", roots.get(0).getChilds().get(0).getName());
+
+        Assertions.assertTrue(TreeUtil.buildTree(new ArrayList<Node>(), Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs).isEmpty());
+    }
+
+    @Test
+    void buildTreeParallel() {
+        List<Node> list = randomTree(500_000, 1);
+
+        long start = System.currentTimeMillis();
+        List<Node> serial = TreeUtil.buildTree(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        long serialCost = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        List<Node> parallel = TreeUtil.buildTreeParallel(list, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        System.out.println("50 万节点：串行构建 %s ms，并行构建 %s ms".formatted(serialCost, System.currentTimeMillis() - start));
+
+        // 结构和子节点顺序完全一致
+        Assertions.assertEquals(serial, parallel);
+    }
+
+    @Test
+    void buildTreeStream() {
+        // 打乱顺序的数据，子节点可能比父节点先到
+        List<Node> list = randomTree(100_000, 4);
+        List<Node> streamed = TreeUtil.buildTree(list.stream(), Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs,
+                Comparator.comparing(Node::getId));
+
+        // 和按 id 排序后的 list 构建的结果一致
+        List<Node> sorted = new ArrayList<>(list);
+        sorted.sort(Comparator.comparing(Node::getId));
+        List<Node> expected = TreeUtil.buildTree(sorted, Node::copy, Node::getId, Node::getPid, pid -> pid == -1, Node::childs);
+        Assertions.assertEquals(expected, streamed);
+    }
+
+    /**
+     * 生成随机的树，父节点的 id 总是小于子节点，顺序打乱
+     *
+     * @param size 节点数量
+     * @param seed 随机种子
+     * @return
+     */
+    static List<Node> randomTree(int size, long seed) {
+        Random random = new Random(seed);
+        List<Node> list = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            int pid = id <= 10 ? -1 : 1 + random.nextInt(id - 1);
+            list.add(new Node(id, pid, "node-" + id));
+        }
+        Collections.shuffle(list, random);
+        return list;
+    }
+
+    /**
+     * 测试用的树节点
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Node {
+        private Integer id;
+        private Integer pid;
+        private String name;
+        private List<Node> childs;
+
+        public Node(Integer id, Integer pid, String name) {
+            this.id = id;
+            this.pid = pid;
+            this.name = name;
+        }
+
+        public Node copy() {
+            return new Node(id, pid, name);
+        }
+
+        /**
+         * 子节点列表，为空时初始化
+         *
+         * @return
+         */
+        public List<Node> childs() {
+            if (childs == null) {
+                childs = new ArrayList<>();
+            }
+            return childs;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 列式时间序列测试
+ */
+class DoubleTimeSeriesTest {
+
+    @Test
+    void sliceAndAlign() {
+        // 无序数据，10:00:30 没有数据
+        record Metric(long timestamp, double value) {
+        }
+        List<Metric> metrics = List.of(
+                new Metric(40_000, 4),
+                new Metric(0, 1),
+                new Metric(20_000, 2),
+                new Metric(10_000, 3),
+                new Metric(50_000, 5)
+        );
+        DoubleTimeSeries series = DoubleTimeSeries.of(metrics, Metric::timestamp, Metric::value);
+        Assertions.assertArrayEquals(new long[]{0, 10_000, 20_000, 40_000, 50_000}, series.toTimestampArray());
+
+        DoubleTimeSeries slice = series.slice(10_000, 40_000);
+        Assertions.assertArrayEquals(new double[]{3, 2}, slice.toValueArray());
+        Assertions.assertEquals(0, series.slice(60_000, 70_000).size());
+
+        DoubleTimeSeries filled = series.fill(0, 50_000, 10_000, Double.NaN);
+        System.out.println("填充后的值：%s".formatted(Arrays.toString(filled.toValueArray())));
+        Assertions.assertEquals(6, filled.size());
+        Assertions.assertTrue(Double.isNaN(filled.getValue(3)));
+        Assertions.assertEquals(30_000, filled.getTimestamp(3));
+
+        Assertions.assertArrayEquals(new double[]{6, 9}, series.resample(0, 59_999, 30_000, Aggregation.SUM, 0));
+        Assertions.assertArrayEquals(new double[]{6, 9}, series.toDirect().resample(0, 59_999, 30_000, Aggregation.SUM, 0));
+    }
+
+    @Test
+    void saveAndLoad(@TempDir Path dir) {
+        int size = 1_000_000;
+        long[] timestamps = new long[size];
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = i * 1000L;
+            values[i] = i * 0.5;
+        }
+        Path file = dir.resolve("series.dts");
+        new DoubleTimeSeries(timestamps, values).save(file);
+
+        DoubleTimeSeries loaded = DoubleTimeSeries.load(file);
+        Assertions.assertEquals(size, loaded.size());
+        Assertions.assertEquals(999_999_000L, loaded.getTimestamp(size - 1));
+        Assertions.assertEquals(499_999.5, loaded.getValue(size - 1));
+        DoubleTimeSeries slice = loaded.slice(500_000, 510_000);
+        Assertions.assertEquals(10, slice.size());
+        Assertions.assertEquals(250, slice.getValue(0));
+
+        // 映射加载的序列保存时会从映射中复制数据；file 还被映射着，Windows 上不能覆盖，所以保存到新的文件
+        Path heapFile = dir.resolve("heap.dts");
+        slice.save(heapFile);
+        Assertions.assertArrayEquals(slice.toValueArray(), DoubleTimeSeries.loadToHeap(heapFile).toValueArray());
+        // 读入堆内存后文件不再被占用，可以覆盖
+        DoubleTimeSeries heap = DoubleTimeSeries.loadToHeap(file);
+        Assertions.assertArrayEquals(timestamps, heap.toTimestampArray());
+        Assertions.assertArrayEquals(values, heap.toValueArray());
+        heap.sliceByIndex(0, 3).save(heapFile);
+        Assertions.assertArrayEquals(new long[]{0, 1000, 2000}, DoubleTimeSeries.loadToHeap(heapFile).toTimestampArray());
+    }
+}
@@ -0,0 +1,78 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 滑动窗口测试
+ */
+class SlidingWindowTest {
+
+    @Test
+    void rolling() {
+        // 每 10 秒一个点，30 秒的点缺失（NaN）
+        DoubleTimeSeries series = new DoubleTimeSeries(
+                new long[]{0, 10_000, 20_000, 30_000, 40_000, 50_000},
+                new double[]{5, 1, 3, Double.NaN, 2, 8});
+        // 窗口 30 秒：(t - 30s, t]
+        double[] avg = SlidingWindow.rolling(series, 30_000, Aggregation.AVG);
+        double[] min = SlidingWindow.rolling(series, 30_000, Aggregation.MIN);
+        double[] max = SlidingWindow.rolling(series, 30_000, Aggregation.MAX);
+        System.out.println("移动平均：%s".formatted(Arrays.toString(avg)));
+        Assertions.assertArrayEquals(new double[]{5, 3, 3, 2, 2.5, 5}, avg);
+        Assertions.assertArrayEquals(new double[]{5, 1, 1, 1, 2, 2}, min);
+        Assertions.assertArrayEquals(new double[]{5, 5, 5, 3, 3, 8}, max);
+        Assertions.assertArrayEquals(new double[]{1, 2, 3, 2, 2, 2},
+                SlidingWindow.rolling(series, 30_000, Aggregation.COUNT));
+    }
+
+    @Test
+    void push() {
+        // 和暴力扫描的结果对比
+        int size = 20_000;
+        long window = 60_000;
+        long[] times = new long[size];
+        double[] values = new double[size];
+        Random random = new Random(1);
+        SlidingWindow slidingWindow = new SlidingWindow(window, 0.01);
+        long time = 0;
+        for (int i = 0; i < size; i++) {
+            time += random.nextInt(1000);
+            times[i] = time;
+            values[i] = random.nextDouble() * 1000;
+            slidingWindow.add(time, values[i]);
+            if (i % 1000 != 0) {
+                continue;
+            }
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            int count = 0;
+            for (int j = i; j >= 0 && times[j] > time - window; j--) {
+                sum += values[j];
+                min = Math.min(min, values[j]);
+                max = Math.max(max, values[j]);
+                count++;
+            }
+            Assertions.assertEquals(count, slidingWindow.count());
+            Assertions.assertEquals(sum, slidingWindow.sum(), 1e-6);
+            Assertions.assertEquals(min, slidingWindow.min());
+            Assertions.assertEquals(max, slidingWindow.max());
+            Assertions.assertEquals(max, slidingWindow.quantile(1));
+            if (count > 100) {
+                // 均匀分布的中位数大约为 500
+                Assertions.assertEquals(500, slidingWindow.quantile(0.5), 100);
+            }
+        }
+        System.out.println("P50=%.2f, P99=%.2f".formatted(slidingWindow.quantile(0.5), slidingWindow.quantile(0.99)));
+
+        // 没有新数据时推进时间，窗口变为空
+        slidingWindow.advance(time + window);
+        Assertions.assertEquals(0, slidingWindow.count());
+        Assertions.assertTrue(Double.isNaN(slidingWindow.avg()));
+    }
+}
@@ -0,0 +1,68 @@
+package cn.mrcode.tool.mytoolbox.temporal.series;
+
+import cn.mrcode.tool.mytoolbox.temporal.series.TimeSeriesResampler.Aggregation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 时间序列重采样测试
+ */
+class TimeSeriesResamplerTest {
+
+    @Test
+    void resample() {
+        // 3 分钟的秒级数据，值为秒数，第 2 分钟没有数据，打乱顺序
+        List<Metric> rawDatas = new ArrayList<>();
+        for (int second = 0; second < 180; second++) {
+            if (second / 60 != 1) {
+                rawDatas.add(new Metric(second * 1000L, second));
+            }
+        }
+        Collections.shuffle(rawDatas);
+
+        long end = 3 * 60_000L;
+        for (Aggregation aggregation : Aggregation.values()) {
+            double[] values = TimeSeriesResampler.resample(rawDatas, 0, end, 60_000,
+                    Metric::timestamp, Metric::value, aggregation, Double.NaN);
+            System.out.println("%s：%s".formatted(aggregation, Arrays.toString(values)));
+            Assertions.assertEquals(4, values.length);
+            Assertions.assertTrue(Double.isNaN(values[1]));
+        }
+        Assertions.assertArrayEquals(new double[]{29.5, 0, 149.5, 0},
+                TimeSeriesResampler.resample(rawDatas, 0, end, 60_000, Metric::timestamp, Metric::value, Aggregation.AVG, 0));
+        Assertions.assertArrayEquals(new double[]{59, 0, 179, 0},
+                TimeSeriesResampler.resample(rawDatas, 0, end, 60_000, Metric::timestamp, Metric::value, Aggregation.LAST, 0));
+        Assertions.assertArrayEquals(new double[]{0, 0, 120, 0},
+                TimeSeriesResampler.resample(rawDatas, 0, end, 60_000, Metric::timestamp, Metric::value, Aggregation.FIRST, 0));
+
+        List<String> buckets = TimeSeriesResampler.resample(rawDatas, 0, end, 60_000,
+                Metric::timestamp, Metric::value, Aggregation.COUNT,
+                (time, value, count) -> time + "=" + (long) value,
+                time -> time + "=-");
+        Assertions.assertEquals(List.of("0=60", "60000=-", "120000=60", "180000=-"), buckets);
+    }
+
+    @Test
+    void resampleArray() {
+        int size = 10_000_000;
+        long[] timestamps = new long[size];
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = i * 1000L;
+            values[i] = i % 100;
+        }
+        long start = System.currentTimeMillis();
+        double[] result = TimeSeriesResampler.resample(timestamps, values, 0, (size - 1) * 1000L, 3600_000,
+                Aggregation.MAX, 0);
+        System.out.println("1000 万个点按小时降采样耗时 %s ms，桶数量 %s".formatted(System.currentTimeMillis() - start, result.length));
+        Assertions.assertEquals(99, result[0]);
+    }
+
+    record Metric(long timestamp, double value) {
+    }
+}
@@ -4,12 +4,20 @@ import com.alibaba.fastjson2.JSONObject;
 import lombok.Builder;
 import lombok.Data;
 import lombok.ToString;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 时间序列工具测试
@@ -36,6 +44,156 @@ class TimeSeriesUtilsTest {
         System.out.println("填充后的数据：%s".formatted(JSONObject.toJSONString(result)));
     }
 
+    @Test
+    void fillMissingTimePointsSorted() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+        // 有重复时间点的有序数据
+        List<DataItem> rawDatas = List.of(
+                DataItem.builder().ymd(20250302).value(20).build(),
+                DataItem.builder().ymd(20250302).value(5).build(),
+                DataItem.builder().ymd(20250305).value(10).build()
+        );
+        List<LocalDate> days = getDays(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 6));
+        AtomicInteger defaultCnt = new AtomicInteger();
+        List<DataItem> result = TimeSeriesUtils.fillMissingTimePointsSorted(rawDatas,
+                days,
+                item -> LocalDate.parse(item.getYmd() + "", formatter),
+                ymd -> {
+                    defaultCnt.incrementAndGet();
+                    return DataItem.builder().ymd(Integer.parseInt(ymd.format(formatter))).value(0).build();
+                },
+                (a, b) -> DataItem.builder().ymd(a.getYmd()).value(a.getValue() + b.getValue()).build());
+        System.out.println("归并填充后的数据：%s".formatted(JSONObject.toJSONString(result)));
+        Assertions.assertEquals(6, result.size());
+        Assertions.assertEquals(25, result.get(1).getValue());
+        // 只有缺失的时间点才会生成默认值
+        Assertions.assertEquals(4, defaultCnt.get());
+
+        // 惰性流：只消费前 2 个时间点
+        List<DataItem> first = TimeSeriesUtils.fillMissingTimePointsStream(rawDatas,
+                        days,
+                        item -> LocalDate.parse(item.getYmd() + "", formatter),
+                        ymd -> DataItem.builder().ymd(Integer.parseInt(ymd.format(formatter))).value(0).build(),
+                        (a, b) -> a,
+                        Comparator.naturalOrder())
+                .limit(2)
+                .toList();
+        Assertions.assertEquals(20, first.get(1).getValue());
+
+        // 没有合并函数时，重复时间点会抛出异常
+        Assertions.assertThrows(IllegalStateException.class, () -> TimeSeriesUtils.fillMissingTimePoints(rawDatas,
+                days,
+                item -> LocalDate.parse(item.getYmd() + "", formatter),
+                ymd -> DataItem.builder().value(0).build()));
+    }
+
+    @Test
+    void fillMissingTimePointsByStep() {
+        ZoneId zone = ZoneId.of("Asia/Shanghai");
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 10, 0);
+        LocalDateTime end = LocalDateTime.of(2025, 3, 1, 10, 5);
+        record Point(LocalDateTime time, int value) {
+        }
+        // 10:01:30 会对齐到 10:01 的桶中，和 10:01 的数据合并
+        List<Point> rawDatas = List.of(
+                new Point(LocalDateTime.of(2025, 3, 1, 10, 1), 1),
+                new Point(LocalDateTime.of(2025, 3, 1, 10, 1, 30), 2),
+                new Point(LocalDateTime.of(2025, 3, 1, 10, 4), 4),
+                new Point(LocalDateTime.of(2025, 3, 1, 11, 0), 100)
+        );
+        List<Point> result = TimeSeriesUtils.fillMissingTimePoints(rawDatas, start, end, Duration.ofMinutes(1), zone,
+                Point::time,
+                time -> new Point(time, 0),
+                (a, b) -> new Point(a.time(), a.value() + b.value()));
+        System.out.println("按步长填充后的数据：%s".formatted(result));
+        Assertions.assertEquals(6, result.size());
+        Assertions.assertEquals(3, result.get(1).value());
+        Assertions.assertEquals(LocalDateTime.of(2025, 3, 1, 10, 2), result.get(2).time());
+        Assertions.assertEquals(end, result.get(5).time());
+    }
+
+    /**
+     * 夏令时切换：时间线按本地时间生成，每天都是 00:00；跳过的 02:00 不在时间线中；重复的 01:30 合并到同一个桶
+     */
+    @Test
+    void fillMissingTimePointsDst() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        record Point(LocalDateTime time, int value) {
+        }
+        LocalDateTime start = LocalDateTime.of(2024, 3, 9, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 12, 0, 0);
+        List<Point> daily = List.of(
+                new Point(LocalDateTime.of(2024, 3, 9, 0, 0), 9),
+                new Point(LocalDateTime.of(2024, 3, 10, 0, 0), 10),
+                new Point(LocalDateTime.of(2024, 3, 11, 0, 0), 11),
+                new Point(LocalDateTime.of(2024, 3, 12, 0, 0), 12)
+        );
+        // 2024-03-10 只有 23 小时，按时间戳等间隔划分时 10 日和 11 日的数据会落到同一个桶中
+        List<Point> result = TimeSeriesUtils.fillMissingTimePoints(daily, start, end, Duration.ofDays(1), zone,
+                Point::time, time -> new Point(time, 0), null);
+        Assertions.assertEquals(daily, result);
+        List<Point> empty = TimeSeriesUtils.fillMissingTimePoints(List.of(), start, end, Period.ofDays(1), zone,
+                Point::time, time -> new Point(time, 0), null);
+        Assertions.assertEquals(List.of(start, start.plusDays(1), start.plusDays(2), end), empty.stream().map(Point::time).toList());
+
+        // 按月：第 n 个时间点为 start + n 个月，不会从 2 月 29 日开始一直偏移；3 月 15 日的数据落在 2 月 29 日的桶中
+        List<Point> monthly = TimeSeriesUtils.fillMissingTimePoints(List.of(new Point(LocalDateTime.of(2024, 3, 15, 0, 0), 1)),
+                LocalDateTime.of(2024, 1, 31, 0, 0), LocalDateTime.of(2024, 4, 30, 0, 0), Period.ofMonths(1), zone,
+                Point::time, time -> new Point(time, 0), null);
+        Assertions.assertEquals(List.of(31, 15, 31, 30), monthly.stream().map(point -> point.time().getDayOfMonth()).toList());
+        Assertions.assertEquals(1, monthly.get(1).value());
+
+        // 夏令时开始：02:00 ~ 03:00 不存在
+        List<Point> springForward = TimeSeriesUtils.fillMissingTimePoints(List.of(), LocalDateTime.of(2024, 3, 10, 0, 0),
+                LocalDateTime.of(2024, 3, 10, 4, 0), Duration.ofHours(1), zone, Point::time, time -> new Point(time, 0), null);
+        Assertions.assertEquals(List.of(0, 1, 3, 4), springForward.stream().map(point -> point.time().getHour()).toList());
+
+        // 夏令时结束：01:00 ~ 02:00 出现两次，两次的 01:30 在同一个桶中
+        List<Point> fallBack = TimeSeriesUtils.fillMissingTimePoints(List.of(
+                        new Point(LocalDateTime.of(2024, 11, 3, 1, 30), 1),
+                        new Point(LocalDateTime.of(2024, 11, 3, 1, 30), 2)),
+                LocalDateTime.of(2024, 11, 3, 0, 0), LocalDateTime.of(2024, 11, 3, 3, 0), Duration.ofHours(1), zone,
+                Point::time, time -> new Point(time, 0), (a, b) -> new Point(a.time(), a.value() + b.value()));
+        System.out.println("夏令时结束当天按小时填充后的数据：%s".formatted(fallBack));
+        Assertions.assertEquals(4, fallBack.size());
+        Assertions.assertEquals(3, fallBack.get(1).value());
+    }
+
+    @Test
+    void fillMissingTimePointsParallel() {
+        record Row(String device, long time, int value) {
+        }
+        // 1000 个设备，每个设备只有偶数分钟有数据
+        List<Row> rows = new ArrayList<>();
+        for (int device = 0; device < 1000; device++) {
+            for (int minute = 0; minute < 60; minute += 2) {
+                rows.add(new Row("device-" + device, minute * 60_000L, minute));
+            }
+        }
+        Map<String, List<Row>> result = TimeSeriesUtils.groupAndFillMissingTimePoints(rows, Row::device,
+                0, 59 * 60_000L, 60_000,
+                Row::time,
+                (device, time) -> new Row(device, time, 0),
+                null);
+        Assertions.assertEquals(1000, result.size());
+        List<Row> device999 = result.get("device-999");
+        Assertions.assertEquals(60, device999.size());
+        Assertions.assertEquals(new Row("device-999", 60_000, 0), device999.get(1));
+        Assertions.assertEquals(58, device999.get(58).value());
+
+        // 自定义时间线
+        List<LocalDate> days = getDays(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 3));
+        Map<String, List<String>> filled = TimeSeriesUtils.fillMissingTimePointsParallel(
+                Map.of("a", List.of("2025-03-02"), "b", List.of()),
+                days,
+                LocalDate::parse,
+                (key, day) -> key + ":" + day,
+                null);
+        System.out.println("多序列填充后的数据：%s".formatted(filled));
+        Assertions.assertEquals(List.of("a:2025-03-01", "2025-03-02", "a:2025-03-03"), filled.get("a"));
+        Assertions.assertEquals(3, filled.get("b").size());
+    }
+
     /**
      * 获取两个时间范围内的每一天的时间，包含 startDay 和 endDay
      *
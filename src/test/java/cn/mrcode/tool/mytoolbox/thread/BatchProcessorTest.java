@@ -4,6 +4,11 @@ import lombok.Data;
 import lombok.ToString;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class BatchProcessorTest {
 
     /**
@@ -52,6 +57,48 @@ class BatchProcessorTest {
         }
     }
 
+    /**
+     * 监控指标测试
+     */
+    @Test
+    public void metrics() {
+        LongHistogram batchSize = new LongHistogram();
+        LongHistogram consumeNanos = new LongHistogram();
+        HistogramMetricsListener metrics = new HistogramMetricsListener() {
+            @Override
+            public void onConsume(String name, int size, long costNanos, boolean error) {
+                super.onConsume(name, size, costNanos, error);
+                batchSize.record(size);
+                consumeNanos.record(costNanos);
+            }
+        };
+        final BatchProcessor<DemoEntity> work = new BatchProcessor<>();
+        work.setMetricsListener(metrics);
+        work.startListen(entities -> {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                4, 4);
+        for (int i = 0; i < 100; i++) {
+            work.put(new DemoEntity(i, i + " name"));
+        }
+        work.await();
+        String report = metrics.report(false);
+        System.out.println(report);
+
+        LongHistogram.Snapshot batch = batchSize.snapshot();
+        LongHistogram.Snapshot consume = consumeNanos.snapshot();
+        assertEquals(100, batch.getSum());
+        // 每批最多 4 条
+        assertTrue(batch.getCount() >= 25 && batch.getCount() <= 100, "批次数：" + batch.getCount());
+        // 每批至少处理 10 毫秒
+        assertTrue(consume.percentile(0.5) > 0 || consume.percentile(0.99) > 0);
+        assertTrue(report.contains(" consume=100 "), report);
+    }
+
 
     /* =========      后面的 start 入口 API 不建议使用，API 回调定义不是很清晰  =========== */
     /**
@@ -0,0 +1,27 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHistogramTest {
+
+    @Test
+    public void percentile() {
+        LongHistogram histogram = new LongHistogram();
+        // 多线程同时记录 1 ~ 10000
+        IntStream.rangeClosed(1, 10000).parallel().forEach(histogram::record);
+        LongHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(10000, snapshot.getMax());
+        assertEquals(5000.5, snapshot.getMean());
+        // 相对误差不超过 1/16
+        assertTrue(Math.abs(snapshot.percentile(0.5) - 5000) <= 5000 / 16);
+        assertTrue(Math.abs(snapshot.percentile(0.99) - 9900) <= 9900 / 16);
+        assertEquals(0, histogram.snapshotAndReset().getCount() - 10000);
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+}
@@ -0,0 +1,335 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimpleTaskDispatcherTest {
+
+    /**
+     * 批量添加任务测试：已经在排队或处理中的 ID 会被过滤掉，addBefore 只回调一次
+     */
+    @Test
+    public void addTasks() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(2, 100, "Task-", id -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+            System.out.println(Thread.currentThread().getName() + " 处理完成：" + id);
+        });
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        dispatcher.addTasks(List.of(1L, 2L, 3L, 3L), ids -> {
+            // 模拟 update xxx set status = 1 where id in (...)
+            System.out.println("第一批进入排队的 ID：" + ids);
+            batches.add(List.copyOf(ids));
+        });
+        dispatcher.addTasks(List.of(2L, 3L, 4L, 5L), ids -> {
+            // 2、3 还在排队或处理中，所以只有 4、5
+            System.out.println("第二批进入排队的 ID：" + ids);
+            batches.add(List.copyOf(ids));
+        });
+        assertEquals(List.of(1L, 2L, 3L), batches.get(0));
+        assertEquals(List.of(4L, 5L), batches.get(1));
+
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), handled);
+    }
+
+    /**
+     * 非阻塞添加任务测试：队列满时按照溢出策略处理
+     */
+    @Test
+    public void tryAddTask() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 1, "Task-", id -> {
+            if (id == 1L) {
+                // worker 取走 1 后一直处理中，后面添加的 ID 会占满队列
+                started.countDown();
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            handled.add(id);
+        });
+        try {
+            dispatcher.addTask(1L);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(SimpleTaskDispatcher.AddResult.QUEUED, dispatcher.tryAddTask(2L));
+            assertEquals(SimpleTaskDispatcher.AddResult.ALREADY_PRESENT, dispatcher.tryAddTask(2L));
+            // 默认拒绝策略
+            assertEquals(SimpleTaskDispatcher.AddResult.REJECTED, dispatcher.tryAddTask(3L, 10, TimeUnit.MILLISECONDS));
+
+            // 溢出策略：放入溢出队列，有空位时自动补充到任务队列
+            dispatcher.setOverflowPolicy(SimpleTaskDispatcher.OverflowPolicy.SPILL);
+            assertEquals(SimpleTaskDispatcher.AddResult.QUEUED, dispatcher.tryAddTask(3L));
+            assertEquals(SimpleTaskDispatcher.AddResult.QUEUED, dispatcher.tryAddTask(4L));
+
+            // 调用方线程处理
+            dispatcher.setOverflowPolicy(SimpleTaskDispatcher.OverflowPolicy.CALLER_RUNS);
+            assertEquals(SimpleTaskDispatcher.AddResult.CALLER_RUNS, dispatcher.tryAddTask(5L));
+            assertTrue(handled.contains(5L));
+        } finally {
+            busy.countDown();
+            dispatcher.shutdown();
+            assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), handled);
+    }
+
+    /**
+     * addBefore 回调期间被关闭：ID 不会留在队列中，添加会被拒绝
+     */
+    @Test
+    public void shutdownDuringAddBefore() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        CountDownLatch busy = new CountDownLatch(1);
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 10, "Task-", id -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+        });
+        // 让唯一的 worker 处于处理中，后面添加的 ID 会留在队列中
+        dispatcher.addTask(0L);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.addTask(1L, id -> dispatcher.shutdown()));
+        assertFalse(dispatcher.containsTask(1L));
+
+        busy.countDown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(0L), handled);
+    }
+
+    /**
+     * 丢弃最早排队的任务：被丢弃的 ID 会回调丢弃回调
+     */
+    @Test
+    public void discardOldest() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 1, "Task-", id -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+        });
+        List<Long> discarded = new CopyOnWriteArrayList<>();
+        dispatcher.setOverflowPolicy(SimpleTaskDispatcher.OverflowPolicy.DISCARD_OLDEST, discarded::add);
+        dispatcher.addTask(1L);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertEquals(SimpleTaskDispatcher.AddResult.QUEUED, dispatcher.tryAddTask(2L));
+        // 队列已满，丢弃 2，3 进入队列
+        assertEquals(SimpleTaskDispatcher.AddResult.QUEUED, dispatcher.tryAddTask(3L));
+        assertEquals(List.of(2L), discarded);
+        assertFalse(dispatcher.containsTask(2L));
+
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(1L, 3L), handled);
+    }
+
+    /**
+     * 平滑关闭：已经排队的任务会处理完
+     */
+    @Test
+    public void shutdown() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(2, 100, "Task-", id -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+        });
+        dispatcher.addTasks(List.of(1L, 2L, 3L, 4L, 5L));
+        dispatcher.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.addTask(6L));
+        assertEquals(SimpleTaskDispatcher.AddResult.REJECTED, dispatcher.tryAddTask(6L));
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), handled);
+    }
+
+    /**
+     * 监控指标：处理失败的任务也会统计耗时，并记录失败次数；空闲时间按工作线程统计
+     */
+    @Test
+    public void metrics() throws InterruptedException {
+        HistogramMetricsListener metrics = new HistogramMetricsListener();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(2, 100, "Metrics-", id -> {
+            // 处理有耗时，两个 worker 都能分到任务；监听器是 worker 启动后才设置的，处理过任务后才开始统计空闲时间
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (id == 3L) {
+                throw new IllegalStateException("模拟处理失败");
+            }
+        });
+        dispatcher.setMetricsListener(metrics);
+        dispatcher.addTasks(List.of(1L, 2L, 3L, 4L, 5L));
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        String report = metrics.report(false);
+        System.out.println(report);
+        assertTrue(report.contains("consume=5 "));
+        assertTrue(report.contains("consumeError=1 "));
+        assertTrue(report.contains("Metrics-1:"));
+        assertTrue(report.contains("Metrics-0:"));
+    }
+
+    /**
+     * 任务超时：卡住的任务会被放弃，ID 被释放，并且有新的 worker 代替
+     */
+    @Test
+    public void taskTimeout() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        Set<Long> timeouts = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 100, "Task-", id -> {
+            if (id == 1L) {
+                // 模拟下游卡住，并且不响应中断
+                long end = System.currentTimeMillis() + 1000;
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait();
+                }
+                return;
+            }
+            handled.add(id);
+        });
+        dispatcher.setTaskTimeout(100, TimeUnit.MILLISECONDS, timeouts::add);
+        dispatcher.addTask(1L);
+        dispatcher.addTask(2L);
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertEquals(Set.of(1L), timeouts);
+        assertEquals(Set.of(2L), handled);
+        // 被放弃的 ID 可以再次添加
+        assertTrue(!dispatcher.containsTask(1L));
+
+        List<Long> unstarted = dispatcher.shutdownNow();
+        assertEquals(List.of(), unstarted);
+        assertTrue(dispatcher.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 虚拟线程模式：IO 密集型任务可以同时处理很多个
+     */
+    @Test
+    public void virtualThread() throws InterruptedException {
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1000, 10000, "VTask-", true, id -> {
+            try {
+                // 模拟一次 HTTP 调用
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+        }, null);
+        long start = System.currentTimeMillis();
+        dispatcher.addTasks(LongStream.range(0, 5000).boxed().toList());
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+        System.out.println("5000 个任务处理耗时：" + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(5000, handled.size());
+    }
+
+    /**
+     * 处理中被再次添加：处理完成后再处理一次，多次添加也只会再处理一次
+     */
+    @Test
+    public void rerun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 100, "Task-", id -> {
+            runs.incrementAndGet();
+            try {
+                TimeUnit.MILLISECONDS.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.addTask(1L);
+        TimeUnit.MILLISECONDS.sleep(50);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(SimpleTaskDispatcher.AddResult.RERUN_SCHEDULED, dispatcher.tryAddTask(1L));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        // 第二次已经在排队或处理中
+        assertTrue(dispatcher.containsTask(1L));
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(2, runs.get());
+    }
+
+    /**
+     * 调用方线程处理中被再次添加，随后平滑关闭：worker 已经退出时，再处理的那一次由调用方线程完成，之后才会终止
+     */
+    @Test
+    public void callerRunsRerunAfterShutdown() throws InterruptedException {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+        CountDownLatch callerStarted = new CountDownLatch(1);
+        CountDownLatch callerBusy = new CountDownLatch(1);
+        AtomicInteger callerRuns = new AtomicInteger();
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 1, "Task-", id -> {
+            try {
+                if (id == 0L) {
+                    workerBusy.await();
+                } else if (id == 2L && callerRuns.incrementAndGet() == 1) {
+                    callerStarted.countDown();
+                    callerBusy.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(id);
+        });
+        dispatcher.setOverflowPolicy(SimpleTaskDispatcher.OverflowPolicy.CALLER_RUNS);
+        dispatcher.addTask(0L);
+        dispatcher.addTask(1L);
+        Thread caller = new Thread(() -> dispatcher.tryAddTask(2L));
+        caller.start();
+        try {
+            assertTrue(callerStarted.await(5, TimeUnit.SECONDS));
+            assertEquals(SimpleTaskDispatcher.AddResult.RERUN_SCHEDULED, dispatcher.tryAddTask(2L));
+            dispatcher.shutdown();
+            // worker 处理完队列后退出，调用方线程还在处理，不能终止
+            workerBusy.countDown();
+            assertFalse(dispatcher.awaitTermination(500, TimeUnit.MILLISECONDS));
+            assertEquals(Set.of(0L, 1L), handled);
+        } finally {
+            workerBusy.countDown();
+            callerBusy.countDown();
+        }
+        caller.join(5000);
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(0L, 1L, 2L), handled);
+        assertEquals(2, callerRuns.get());
+        assertFalse(dispatcher.containsTask(2L));
+    }
+}
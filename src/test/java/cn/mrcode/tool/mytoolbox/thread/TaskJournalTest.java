@@ -0,0 +1,79 @@
+package cn.mrcode.tool.mytoolbox.thread;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskJournalTest {
+
+    /**
+     * 重启后从日志中恢复未完成的 ID
+     */
+    @Test
+    public void recover(@TempDir Path dir) throws InterruptedException {
+        Path path = dir.resolve("task.journal");
+        TaskJournal<Long> journal = new TaskJournal<>(path, TaskJournal.IdCodec.LONG);
+        journal.admit(1L);
+        journal.admit(2L);
+        journal.admit(3L);
+        journal.complete(2L);
+        // 模拟服务重启
+        journal.close();
+        // 关闭之后才处理完成的 ID 仍然保留在日志中
+        journal.complete(3L);
+
+        journal = new TaskJournal<>(path, TaskJournal.IdCodec.LONG);
+        assertEquals(List.of(1L, 3L), journal.recover());
+
+        // 分发器启动时会把未完成的 ID 重新放入队列
+        Set<Long> handled = ConcurrentHashMap.newKeySet();
+        SimpleTaskDispatcher<Long> dispatcher = new SimpleTaskDispatcher<>(1, 1, "Task-", handled::add, journal);
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(1L, 3L), handled);
+        assertEquals(List.of(), journal.recover());
+        journal.close();
+    }
+
+    /**
+     * 文件写满时会压缩，只保留未完成的 ID
+     */
+    @Test
+    public void compact(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("task.journal");
+        TaskJournal<String> journal = new TaskJournal<>(path, TaskJournal.IdCodec.STRING, 64, 0);
+        for (int i = 0; i < 1000; i++) {
+            journal.admit("id-" + i);
+            if (i % 10 != 0) {
+                journal.complete("id-" + i);
+            }
+        }
+        journal.close();
+
+        journal = new TaskJournal<>(path, TaskJournal.IdCodec.STRING, 64, 0);
+        List<String> ids = journal.recover();
+        assertEquals(100, ids.size());
+        assertEquals("id-0", ids.get(0));
+        assertEquals("id-990", ids.get(99));
+        journal.close();
+
+        // 每次压缩写入新一代的文件，旧文件会被删除，不会覆盖正在映射的文件
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(file -> file.getFileName().toString()).toList();
+            System.out.println("任务日志文件：" + names);
+            assertEquals(1, names.size());
+            assertTrue(names.get(0).startsWith("task.journal."));
+        }
+    }
+}